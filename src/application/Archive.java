@@ -0,0 +1,66 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import chess.ChessMatch;
+import chess.exceptions.ChessException;
+import chess.archive.GameArchive;
+import chess.archive.GameArchiveWriter;
+import chess.pgn.PgnGame;
+import chess.pgn.PgnReader;
+
+/*
+ * Converts PGN files to a binary game archive and reads games back from it.
+ * Usage: Archive build archive pgn...
+ *        Archive show archive game [ply]
+ */
+public class Archive {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length >= 3 && args[0].equals("build")) {
+			build(Path.of(args[1]), args);
+		} else if (args.length >= 3 && args[0].equals("show")) {
+			show(Path.of(args[1]), Long.parseLong(args[2]), args.length > 3 ? Integer.parseInt(args[3]) : -1);
+		} else {
+			System.out.println("Usage: Archive build archive pgn... | Archive show archive game [ply]");
+		}
+	}
+
+	private static void build(Path archive, String[] args) throws IOException {
+		long start = System.nanoTime();
+		long skipped = 0;
+		try (GameArchiveWriter writer = new GameArchiveWriter(archive)) {
+			for (int i = 2; i < args.length; i++) {
+				try (PgnReader reader = new PgnReader(Path.of(args[i]))) {
+					PgnGame game;
+					while ((game = reader.next()) != null) {
+						try {
+							writer.add(game.replay(), game.tags(), game.result());
+						} catch (RuntimeException e) {
+							// a broken game is skipped whatever it throws
+							skipped++;
+							System.err.println(args[i] + " game " + reader.getGamesRead() + ": "
+									+ (e instanceof ChessException ? e.getMessage() : e.toString()));
+						}
+					}
+				}
+			}
+			System.out.printf("%,d games archived, %,d skipped in %.3f s%n", writer.getGames(), skipped,
+					(System.nanoTime() - start) / 1e9);
+		}
+	}
+
+	private static void show(Path path, long game, int ply) throws IOException {
+		try (GameArchive archive = new GameArchive(path)) {
+			int plies = ply < 0 ? archive.plies(game) : ply;
+			long start = System.nanoTime();
+			ChessMatch chessMatch = archive.replay(game, plies);
+			long elapsed = System.nanoTime() - start;
+			System.out.println(archive.tags(game));
+			System.out.printf("Game %,d of %,d, %s, ply %d of %d (%.3f ms)%n", game, archive.size(),
+					archive.result(game), plies, archive.plies(game), elapsed / 1e6);
+			System.out.println(chessMatch.toFen());
+		}
+	}
+}
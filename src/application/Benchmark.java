@@ -0,0 +1,143 @@
+package application;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.PieceType;
+import chess.engine.Engine;
+import chess.engine.SearchResult;
+
+/*
+ * Micro benchmarks of the move generation and check detection hot paths on
+ * fixed positions. Reports time and allocation per operation, plus the
+ * collections seen while measuring. Usage: Benchmark [measureMillis]
+ */
+public class Benchmark {
+
+	private record Scenario(String name, String moves, String move) {
+	}
+
+	private static final List<Scenario> SCENARIOS = List.of(
+			new Scenario("opening", "e2e4 e7e5 g1f3 b8c6 f1b5 a7a6", "b5a4"),
+			new Scenario("middlegame",
+					"e2e4 e7e5 g1f3 b8c6 f1c4 f8c5 c2c3 g8f6 d2d3 d7d6 e1g1 e8g8 f1e1 a7a6 c4b3 c5a7 h2h3 h7h6 b1d2 f8e8",
+					"d2f1"),
+			new Scenario("endgame", "b2b4 e7e6 b1a3 f8b4 c1b2 b4a3 b2a3 h7h5 e2e3 d8e7 a3e7 g8e7 d1h5 h8h5 h2h4 h5h4 "
+					+ "h1h4 e7g8 d2d4 g7g6 h4e4 a7a5 e4e6 f7e6 e1e2 b8c6 e2d1 c6d4 e3d4 d7d6 f2f3 c8d7 g2g4 g8e7 f1c4 "
+					+ "e7f5 c4e6 d7e6 g4f5 e6a2 a1a2 g6f5 a2a5 a8a5 f3f4 a5a8 d1e1 a8c8 d4d5 c8a8 e1f2 e8f8 f2e2 a8b8 "
+					+ "c2c3 b8a8 e2d3 a8a2 c3c4 b7b6 g1h3 f8e8 h3g1 a2h2 d3d4 c7c6 d5c6 e8f8 d4c3 f8e7 c3b3 h2h4 b3b4 "
+					+ "h4f4", "b4b5"));
+
+	private static final int BATCH = 64;
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+			.getThreadMXBean();
+
+	// keeps the results alive so the measured calls can't be optimized away
+	public static volatile int sink;
+
+	public static void main(String[] args) {
+		long measureMillis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+
+		System.out.printf("%-11s %-36s %12s %12s %10s %5s%n", "Position", "Benchmark", "ns/op", "B/op", "MB/s",
+				"GCs");
+		for (Scenario scenario : SCENARIOS) {
+			ChessMatch chessMatch = replay(scenario.moves());
+			ChessPosition[] move = { position(scenario.move(), 0), position(scenario.move(), 2) };
+
+			for (ChessPiece piece : piecesToMove(chessMatch)) {
+				String type = piece.getClass().getSimpleName();
+				run(scenario.name(), "getAllPossibleMoves " + type, measureMillis, () -> piece,
+						ChessPiece::getAllPossibleMoves);
+				run(scenario.name(), "getPossibleMoves " + type, measureMillis, () -> piece,
+						ChessPiece::getPossibleMoves);
+			}
+			int[] moves = new int[ChessMatch.MAX_MOVES];
+			run(scenario.name(), "generateMoves", measureMillis, () -> chessMatch, m -> m.generateMoves(moves));
+			run(scenario.name(), "testCheck", measureMillis, () -> chessMatch,
+					m -> m.testCheck(m.getCurrentPlayer()));
+			run(scenario.name(), "testCheckMate", measureMillis, () -> chessMatch,
+					m -> m.testCheckMate(m.getCurrentPlayer()));
+			run(scenario.name(), "performChessMove", measureMillis, () -> new ChessMatch(chessMatch),
+					m -> m.performChessMove(move[0], move[1]));
+		}
+
+		// the engine figure is the depth reached in a fixed budget
+		System.out.printf("%n%-11s %-36s %12s %12s %10s%n", "Position", "Search", "depth", "nodes", "ms");
+		for (Scenario scenario : SCENARIOS) {
+			SearchResult result = new Engine().search(replay(scenario.moves()), measureMillis);
+			System.out.printf("%-11s %-36s %12d %,12d %10d%n", scenario.name(), "Engine.search " + measureMillis + " ms",
+					result.depth(), result.nodes(), result.millis());
+		}
+	}
+
+	// setup runs outside of the measured window, op runs once on each value it builds
+	private static <T> void run(String position, String benchmark, long measureMillis, Supplier<T> setup,
+			Function<T, Object> op) {
+		measure(setup, op, measureMillis / 2);
+		long[] result = measure(setup, op, measureMillis);
+		long ops = result[0], nanos = result[1], bytes = result[2], collections = result[3];
+		System.out.printf("%-11s %-36s %,12.1f %,12.1f %,10.1f %5d%n", position, benchmark, (double) nanos / ops,
+				(double) bytes / ops, bytes / 1e6 / (nanos / 1e9), collections);
+	}
+
+	private static <T> long[] measure(Supplier<T> setup, Function<T, Object> op, long millis) {
+		List<T> batch = new ArrayList<>(BATCH);
+		long ops = 0, nanos = 0, bytes = 0;
+		long collections = collectionCount();
+		long deadline = System.nanoTime() + millis * 1_000_000;
+		while (System.nanoTime() < deadline) {
+			batch.clear();
+			for (int i = 0; i < BATCH; i++)
+				batch.add(setup.get());
+
+			long allocated = THREADS.getCurrentThreadAllocatedBytes();
+			long start = System.nanoTime();
+			for (int i = 0; i < BATCH; i++)
+				sink += System.identityHashCode(op.apply(batch.get(i)));
+			nanos += System.nanoTime() - start;
+			bytes += THREADS.getCurrentThreadAllocatedBytes() - allocated;
+			ops += BATCH;
+		}
+		return new long[] { ops, nanos, bytes, collectionCount() - collections };
+	}
+
+	private static long collectionCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			count += Math.max(gc.getCollectionCount(), 0);
+		return count;
+	}
+
+	// one piece of each type for the side to move
+	private static List<ChessPiece> piecesToMove(ChessMatch chessMatch) {
+		List<ChessPiece> pieces = new ArrayList<>();
+		boolean[] seen = new boolean[PieceType.values().length];
+		for (ChessPiece[] row : chessMatch.getPieces())
+			for (ChessPiece piece : row)
+				if (piece != null && piece.getColor() == chessMatch.getCurrentPlayer()
+						&& !seen[piece.getType().ordinal()]) {
+					seen[piece.getType().ordinal()] = true;
+					pieces.add(piece);
+				}
+		pieces.sort((a, b) -> a.getType().compareTo(b.getType()));
+		return pieces;
+	}
+
+	private static ChessMatch replay(String moves) {
+		ChessMatch chessMatch = new ChessMatch();
+		for (String move : moves.split(" "))
+			chessMatch.performChessMove(position(move, 0), position(move, 2));
+		return chessMatch;
+	}
+
+	private static ChessPosition position(String move, int index) {
+		return new ChessPosition(move.charAt(index), move.charAt(index + 1) - '0');
+	}
+}
@@ -0,0 +1,65 @@
+package application;
+
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.Color;
+import chess.pieces.King;
+
+/*
+ * What the board drawing needs to know about one turn. It is computed once,
+ * so printing both views of the board doesn't ask the match about check and
+ * possible moves square by square.
+ */
+public class BoardSnapshot {
+	public static final int SQUARES = 64;
+
+	private final ChessPiece[] pieces = new ChessPiece[SQUARES];
+	private final long highlight;
+	private final int checkedKing; // -1 when no king is in check
+	private final long movable; // pieces of the side in check that still can move
+
+	public BoardSnapshot(ChessMatch chessMatch, boolean[][] possibleMovies) {
+		long highlight = 0;
+		for (int i = 0; i < possibleMovies.length; i++)
+			for (int j = 0; j < possibleMovies[i].length; j++)
+				if (possibleMovies[i][j])
+					highlight |= 1L << (i * 8 + j);
+		this.highlight = highlight;
+
+		int checkedKing = -1;
+		long movable = 0;
+		for (int square = 0; square < SQUARES; square++)
+			pieces[square] = chessMatch.getPiece(square);
+		for (Color color : Color.values()) {
+			if (!chessMatch.testCheck(color))
+				continue;
+			for (int square = 0; square < SQUARES; square++) {
+				ChessPiece piece = pieces[square];
+				if (piece == null || piece.getColor() != color)
+					continue;
+				if (piece instanceof King)
+					checkedKing = square;
+				if (!chessMatch.getCheckMate() && piece.isThereAnyPossibleMove())
+					movable |= 1L << square;
+			}
+		}
+		this.checkedKing = checkedKing;
+		this.movable = movable;
+	}
+
+	public ChessPiece getPiece(int square) {
+		return pieces[square];
+	}
+
+	public boolean isHighlighted(int square) {
+		return (highlight >>> square & 1L) != 0;
+	}
+
+	public boolean isCheckedKing(int square) {
+		return square == checkedKing;
+	}
+
+	public boolean isMovable(int square) {
+		return (movable >>> square & 1L) != 0;
+	}
+}
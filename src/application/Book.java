@@ -0,0 +1,50 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import chess.ChessMatch;
+import chess.Move;
+import chess.book.OpeningBook;
+import chess.book.OpeningBookBuilder;
+
+/*
+ * Builds an opening book from a directory of PGN files and looks positions up
+ * in it. Usage: Book build directory book [maxPlies] [minGames]
+ *               Book probe book [fen]
+ */
+public class Book {
+	private static final int DEFAULT_MAX_PLIES = 24;
+	private static final int DEFAULT_MIN_GAMES = 2;
+	private static final int PROBES = 1_000_000;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length >= 3 && args[0].equals("build")) {
+			long start = System.nanoTime();
+			OpeningBookBuilder builder = new OpeningBookBuilder(
+					args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_MAX_PLIES,
+					args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_MIN_GAMES);
+			builder.addDirectory(Path.of(args[1]));
+			int entries = builder.write(Path.of(args[2]));
+			System.out.printf("%,d games read, %,d skipped, %,d entries written in %.3f s%n", builder.getGames(),
+					builder.getSkipped(), entries, (System.nanoTime() - start) / 1e9);
+		} else if (args.length >= 2 && args[0].equals("probe")) {
+			ChessMatch chessMatch = args.length > 2 ? new ChessMatch(args[2]) : new ChessMatch();
+			try (OpeningBook book = new OpeningBook(Path.of(args[1]))) {
+				int[] moves = new int[ChessMatch.MAX_MOVES];
+				int[] weights = new int[ChessMatch.MAX_MOVES];
+				int count = book.probe(chessMatch, moves, weights);
+				for (int i = 0; i < count; i++)
+					System.out.printf("  %s %d%n", Move.toString(moves[i]), weights[i]);
+
+				long start = System.nanoTime();
+				for (int i = 0; i < PROBES; i++)
+					count += book.probe(chessMatch, moves, weights);
+				System.out.printf("%,d entries, %d ns per probe%n", book.size(),
+						(System.nanoTime() - start) / PROBES);
+			}
+		} else {
+			System.out.println("Usage: Book build directory book [maxPlies] [minGames] | Book probe book [fen]");
+		}
+	}
+}
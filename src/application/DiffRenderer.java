@@ -0,0 +1,104 @@
+package application;
+
+import java.util.List;
+
+/*
+ * Keeps the last frame written to the terminal and repaints only the
+ * segments that changed, moving the cursor to them with ANSI sequences.
+ * A frame is a list of screen lines, each one split in segments that can be
+ * painted on their own.
+ */
+public class DiffRenderer {
+	private static final String CLEAR_SCREEN = "\033[H\033[2J";
+	private static final String CLEAR_LINE = "\033[2K";
+	private static final String CLEAR_TO_END_OF_LINE = "\033[K";
+	private static final String CLEAR_TO_END_OF_SCREEN = "\033[J";
+
+	private List<String[]> previous; // null when the screen must be repainted
+	private long bytesWritten;
+
+	public void render(List<String[]> lines) {
+		StringBuilder sb = new StringBuilder();
+		if (previous == null)
+			sb.append(CLEAR_SCREEN);
+
+		for (int row = 0; row < lines.size(); row++) {
+			String[] segments = lines.get(row);
+			String[] old = previous != null && row < previous.size() ? previous.get(row) : null;
+			if (old == null || old.length != segments.length) {
+				moveTo(sb, row, 0);
+				sb.append(CLEAR_LINE);
+				for (String segment : segments)
+					sb.append(segment);
+				continue;
+			}
+
+			int column = 0;
+			for (int i = 0; i < segments.length; i++) {
+				if (!segments[i].equals(old[i])) {
+					moveTo(sb, row, column);
+					if (visibleLength(segments[i]) == visibleLength(old[i])) {
+						sb.append(segments[i]);
+					} else {
+						// everything after it moved, so the rest of the line is repainted
+						for (int j = i; j < segments.length; j++)
+							sb.append(segments[j]);
+						sb.append(CLEAR_TO_END_OF_LINE);
+						break;
+					}
+				}
+				column += visibleLength(segments[i]);
+			}
+		}
+		// the prompt and anything under the old frame moved, so they are cleared
+		if (previous != null && previous.size() != lines.size()) {
+			moveTo(sb, lines.size(), 0);
+			sb.append(CLEAR_TO_END_OF_SCREEN);
+		}
+		previous = lines;
+		write(sb);
+	}
+
+	// writes the text on the line below the frame, clearing whatever was typed
+	// or printed under it since the last prompt
+	public void prompt(String text) {
+		StringBuilder sb = new StringBuilder();
+		moveTo(sb, previous == null ? 0 : previous.size() + 1, 0);
+		sb.append(CLEAR_TO_END_OF_SCREEN).append(text);
+		write(sb);
+	}
+
+	// the next frame is painted from scratch, for when something else drew on the screen
+	public void invalidate() {
+		previous = null;
+	}
+
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	private void write(StringBuilder sb) {
+		bytesWritten += sb.length();
+		System.out.print(sb);
+		System.out.flush();
+	}
+
+	// terminal rows and columns start at 1
+	private static void moveTo(StringBuilder sb, int row, int column) {
+		sb.append("\033[").append(row + 1).append(';').append(column + 1).append('H');
+	}
+
+	// characters that take room on the screen, without the escape sequences
+	private static int visibleLength(String segment) {
+		int length = 0;
+		for (int i = 0; i < segment.length(); i++) {
+			if (segment.charAt(i) == '\033') {
+				while (i < segment.length() && !Character.isLetter(segment.charAt(i)))
+					i++;
+			} else {
+				length++;
+			}
+		}
+		return length;
+	}
+}
@@ -0,0 +1,74 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import chess.ChessMatch;
+import chess.Move;
+import chess.tablebase.Tablebase;
+import chess.tablebase.Tablebases;
+import chess.tablebase.TablebaseGenerator;
+
+/*
+ * Generates endgame tablebases into a directory and probes positions with
+ * them. Pawn sets need the tables they promote into, so list those first.
+ * Usage: Endgames generate directory [material...]
+ *        Endgames probe directory fen
+ */
+public class Endgames {
+	private static final String[] DEFAULT_MATERIALS = { "KQK", "KRK", "KPK", "KBNK" };
+	private static final int PROBES = 1_000_000;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length >= 2 && args[0].equals("generate")) {
+			Path directory = Path.of(args[1]);
+			Files.createDirectories(directory);
+			Tablebases tablebases = new Tablebases(directory);
+			ForkJoinPool pool = ForkJoinPool.commonPool();
+			String[] materials = args.length > 2 ? Arrays.copyOfRange(args, 2, args.length)
+					: DEFAULT_MATERIALS;
+			for (String material : materials) {
+				long start = System.nanoTime();
+				TablebaseGenerator generator = new TablebaseGenerator(Tablebases.parse(material), tablebases);
+				generator.generate(pool);
+				Tablebase tablebase = generator.write(directory);
+				tablebases.add(tablebase);
+				System.out.printf("%s: %,d positions, longest mate %d plies, %d passes, %.3f s%n",
+						generator.getName(), tablebase.size(), generator.getMaxPlies(), generator.getPasses(),
+						(System.nanoTime() - start) / 1e9);
+			}
+		} else if (args.length >= 3 && args[0].equals("probe")) {
+			Tablebases tablebases = new Tablebases(Path.of(args[1]));
+			ChessMatch chessMatch = new ChessMatch(args[2]);
+			System.out.println(describe(tablebases.probe(chessMatch)));
+
+			// every move with the value it leaves the opponent
+			int[] moves = new int[ChessMatch.MAX_MOVES];
+			int count = chessMatch.generateMoves(moves);
+			for (int i = 0; i < count; i++) {
+				chessMatch.playMove(moves[i]);
+				System.out.printf("  %s %s%n", Move.toString(moves[i]), describe(tablebases.probe(chessMatch)));
+				chessMatch.undoPlayedMove();
+			}
+
+			long start = System.nanoTime();
+			for (int i = 0; i < PROBES; i++)
+				tablebases.probe(chessMatch);
+			System.out.printf("%s, %d ns per probe%n", tablebases.getNames(), (System.nanoTime() - start) / PROBES);
+		} else {
+			System.out.println("Usage: Endgames generate directory [material...] | Endgames probe directory fen");
+		}
+	}
+
+	private static String describe(int value) {
+		if (value == Tablebases.UNKNOWN)
+			return "not in the tablebases";
+		if (value == 0)
+			return "draw";
+		int plies = Math.abs(value) - 1;
+		return (value > 0 ? "mates" : "is mated") + " in " + plies + " plies";
+	}
+}
@@ -0,0 +1,65 @@
+package application;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import chess.ChessMatch;
+
+/*
+ * Runs perft on the reference positions and compares with the published node
+ * counts. Usage: Perft [maxDepth] [parallel] [divide]
+ */
+public class Perft {
+
+	private record Reference(String name, Supplier<ChessMatch> setup, long... nodes) {
+	}
+
+	private static final List<Reference> REFERENCES = List.of(
+			new Reference("Start position", ChessMatch::new, 20, 400, 8902, 197281, 4865609, 119060324),
+			new Reference("Kiwipete", () -> new ChessMatch("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"),
+					48, 2039, 97862, 4085603, 193690690),
+			new Reference("Position 3", () -> new ChessMatch("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"),
+					14, 191, 2812, 43238, 674624, 11030083),
+			new Reference("Position 4", () -> new ChessMatch("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1"),
+					6, 264, 9467, 422333, 15833292),
+			new Reference("Position 5", () -> new ChessMatch("rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8"),
+					44, 1486, 62379, 2103487, 89941194),
+			new Reference("Position 6",
+					() -> new ChessMatch("r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10"),
+					46, 2079, 89890, 3894594, 164075551));
+
+	public static void main(String[] args) {
+		int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		boolean parallel = List.of(args).contains("parallel");
+		boolean divide = List.of(args).contains("divide");
+		ForkJoinPool pool = parallel ? ForkJoinPool.commonPool() : null;
+
+		boolean allPassed = true;
+		for (Reference reference : REFERENCES) {
+			System.out.println(reference.name());
+			for (int depth = 1; depth <= Math.min(maxDepth, reference.nodes().length); depth++) {
+				ChessMatch chessMatch = reference.setup().get();
+				long start = System.nanoTime();
+				long nodes;
+				if (divide) {
+					Map<String, Long> moves = parallel ? chessMatch.divide(depth, pool) : chessMatch.divide(depth);
+					moves.forEach((move, n) -> System.out.println("  " + move + ": " + n));
+					nodes = moves.values().stream().mapToLong(Long::longValue).sum();
+				} else {
+					nodes = parallel ? chessMatch.perft(depth, pool) : chessMatch.perft(depth);
+				}
+				long elapsed = Math.max(System.nanoTime() - start, 1);
+
+				boolean passed = nodes == reference.nodes()[depth - 1];
+				allPassed &= passed;
+				System.out.printf("  depth %d  nodes %,d  %.3f s  %,d nps  %s%n", depth, nodes, elapsed / 1e9,
+						nodes * 1_000_000_000L / elapsed,
+						passed ? "OK" : "FAILED (expected " + reference.nodes()[depth - 1] + ")");
+			}
+		}
+		if (!allPassed)
+			System.exit(1);
+	}
+}
@@ -0,0 +1,88 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import chess.ChessMatch;
+import chess.exceptions.ChessException;
+import chess.pgn.PgnGame;
+import chess.pgn.PgnReader;
+
+/*
+ * Replays every game of PGN files through ChessMatch to validate them and
+ * count results. One thread reads, the others replay; the bounded queue
+ * between them makes the reader wait when the replays fall behind, so memory
+ * stays the same whatever the file size. Usage: PgnReplay file... [-threads n]
+ */
+public class PgnReplay {
+	private static final int QUEUED_GAMES_PER_THREAD = 64;
+	private static final int MAX_REPORTED_ERRORS = 20;
+
+	private static final LongAdder games = new LongAdder();
+	private static final LongAdder plies = new LongAdder();
+	private static final LongAdder errors = new LongAdder();
+	private static final LongAdder checkmates = new LongAdder();
+	private static final Map<String, LongAdder> results = new ConcurrentHashMap<>();
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		for (int i = 0; i < args.length - 1; i++)
+			if (args[i].equals("-threads"))
+				threads = Integer.parseInt(args[i + 1]);
+
+		// when the queue is full the reader replays the game itself
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(threads * QUEUED_GAMES_PER_THREAD), new ThreadPoolExecutor.CallerRunsPolicy());
+
+		long start = System.nanoTime();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-threads")) {
+				i++;
+				continue;
+			}
+			try (PgnReader reader = new PgnReader(Path.of(args[i]))) {
+				PgnGame game;
+				while ((game = reader.next()) != null) {
+					PgnGame g = game;
+					long number = reader.getGamesRead();
+					String file = args[i];
+					executor.execute(() -> replay(file, number, g));
+				}
+			}
+		}
+		executor.shutdown();
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+		long elapsed = Math.max(System.nanoTime() - start, 1);
+
+		System.out.printf("%,d games, %,d plies, %,d checkmates, %,d errors in %.3f s (%,d games/min)%n",
+				games.sum(), plies.sum(), checkmates.sum(), errors.sum(), elapsed / 1e9,
+				games.sum() * 60_000_000_000L / elapsed);
+		new TreeMap<>(results).forEach((result, count) -> System.out.printf("  %-8s %,d%n", result, count.sum()));
+		if (errors.sum() > 0)
+			System.exit(1);
+	}
+
+	private static void replay(String file, long number, PgnGame game) {
+		games.increment();
+		results.computeIfAbsent(game.result(), r -> new LongAdder()).increment();
+		try {
+			ChessMatch chessMatch = game.replay();
+			plies.add(game.moves().size());
+			if (chessMatch.getCheckMate())
+				checkmates.increment();
+		} catch (RuntimeException e) {
+			// a broken game is an error whatever it throws, not only an illegal move
+			errors.increment();
+			if (errors.sum() <= MAX_REPORTED_ERRORS)
+				System.err.println(file + " game " + number + ": "
+						+ (e instanceof ChessException ? e.getMessage() : e.toString()));
+		}
+	}
+}
@@ -1,41 +1,80 @@
 package application;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.InputMismatchException;
 import java.util.List;
+import java.util.Random;
 import java.util.Scanner;
 
 import chess.ChessMatch;
 import chess.ChessPiece;
 import chess.ChessPosition;
+import chess.Color;
+import chess.Move;
+import chess.book.OpeningBook;
+import chess.engine.Engine;
+import chess.engine.SearchResult;
 import chess.exceptions.ChessException;
+import chess.tablebase.Tablebases;
 
 public class Program {
 
+	private static final long COMPUTER_MILLIS = 1000;
+
 	private static Scanner sc = new Scanner(System.in);
 	private static ChessMatch chessMatch = new ChessMatch();
 	private static List<ChessPiece> capturedPieces = new ArrayList<>();
+	private static Engine engine = new Engine();
+	private static Color computerColor; // null when two people are playing
+	private static String lastComputerMove;
+	// repaints only what changed on the screen, null when every frame is drawn from scratch
+	private static DiffRenderer renderer;
+	private static OpeningBook book; // null without --book
+	private static final int[] bookMoves = new int[ChessMatch.MAX_MOVES];
+	private static final int[] bookWeights = new int[ChessMatch.MAX_MOVES];
+	private static final Random random = new Random();
 
-	public static void main(String[] args) {
+	// pass --diff to repaint only the squares and lines that changed,
+	// --book file for the computer to play from an opening book and
+	// --tablebases directory for it to play endgames perfectly
+	public static void main(String[] args) throws IOException {
+		List<String> options = Arrays.asList(args);
+		if (options.contains("--diff"))
+			renderer = new DiffRenderer();
+		int bookOption = options.indexOf("--book");
+		if (bookOption >= 0 && bookOption + 1 < args.length)
+			book = new OpeningBook(Path.of(args[bookOption + 1]));
+		int tablebasesOption = options.indexOf("--tablebases");
+		if (tablebasesOption >= 0 && tablebasesOption + 1 < args.length)
+			engine.setTablebases(new Tablebases(Path.of(args[tablebasesOption + 1])));
+		computerColor = choseComputerColor();
 
 		while (!chessMatch.getCheckMate()) {
 			try {
-				UI.clearScreen();
 				ChessPosition source, target;
 				ChessPiece capturedPiece;
-				UI.printMatch(chessMatch, capturedPieces);
+				showMatch(null);
+
+				if (chessMatch.getCurrentPlayer() == computerColor) {
+					if (!playComputerMove())
+						break;
+					continue;
+				}
 
-				System.out.print("\nOrigem: ");
+				prompt("Origem: ");
 				source = UI.readChessPosition(sc);
 
 				boolean possibleMovies[][] = chessMatch.possibleMovies(source);
-				UI.clearScreen();
-				UI.printBoard(chessMatch, possibleMovies);
+				showMatch(possibleMovies);
 
-				System.out.print("\nDestino: ");
+				prompt("Destino: ");
 				target = UI.readChessPosition(sc);
 
-				capturedPiece = chessMatch.performChessMove(source, target);
+				String promotionType = chessMatch.isPromotion(source, target) ? chosePieceType() : null;
+				capturedPiece = chessMatch.performChessMove(source, target, promotionType);
 				if (capturedPiece != null)
 					capturedPieces.add(capturedPiece);
 
@@ -47,18 +86,104 @@ public class Program {
 				sc.nextLine();
 			}
 		}
+		showMatch(null);
+		if (renderer != null)
+			renderer.prompt("");
+	}
+
+	// possibleMovies is null for the whole match screen, otherwise only the board
+	// with the possible moves is drawn, unless only the changes are repainted
+	private static void showMatch(boolean[][] possibleMovies) {
+		if (renderer != null) {
+			if (possibleMovies == null)
+				possibleMovies = new boolean[chessMatch.getRows()][chessMatch.getColumns()];
+			List<String[]> lines = UI.matchLines(chessMatch, capturedPieces, possibleMovies);
+			if (lastComputerMove != null)
+				lines.add(new String[] { lastComputerMove });
+			renderer.render(lines);
+			return;
+		}
+
 		UI.clearScreen();
+		if (possibleMovies != null) {
+			UI.printBoard(chessMatch, possibleMovies);
+			return;
+		}
 		UI.printMatch(chessMatch, capturedPieces);
+		if (lastComputerMove != null)
+			System.out.println(lastComputerMove);
+	}
+
+	private static void prompt(String text) {
+		if (renderer != null)
+			renderer.prompt(text);
+		else
+			System.out.print("\n" + text);
 	}
 
-	public static String chosePieceType() {
+	private static Color choseComputerColor() {
+		while (true) {
+			System.out.print("Computer plays (W/B/-): ");
+			String side = sc.nextLine().trim().toUpperCase();
+			if (side.equals("W"))
+				return Color.WHITE;
+			if (side.equals("B"))
+				return Color.BLACK;
+			if (side.isEmpty() || side.equals("-"))
+				return null;
+			System.out.print("Invalid side! ");
+		}
+	}
+
+	// returns false when the computer has no legal move left
+	private static boolean playComputerMove() {
+		if (book != null && playBookMove())
+			return true;
+
+		SearchResult result = engine.search(chessMatch, COMPUTER_MILLIS);
+		if (result.bestMove() == Move.NONE) {
+			System.out.println("No legal moves left, the game is drawn");
+			return false;
+		}
+
+		int move = result.bestMove();
+		ChessPiece capturedPiece = chessMatch.performChessMove(move);
+		if (capturedPiece != null)
+			capturedPieces.add(capturedPiece);
+
+		lastComputerMove = String.format("Computer played %s (depth %d, score %+.2f, %d nodes in %d ms)",
+				Move.toString(move), result.depth(), result.score() / 100.0, result.nodes(), result.millis());
+		return true;
+	}
+
+	// false when the position is not in the book
+	private static boolean playBookMove() {
+		int move = book.pick(chessMatch, bookMoves, bookWeights, random.nextDouble());
+		if (move == Move.NONE)
+			return false;
+		try {
+			ChessPiece capturedPiece = chessMatch.performChessMove(move);
+			if (capturedPiece != null)
+				capturedPieces.add(capturedPiece);
+		} catch (ChessException e) {
+			// another position with the same key
+			return false;
+		}
+		lastComputerMove = "Computer played " + Move.toString(move) + " from the book";
+		return true;
+	}
+
+	private static String chosePieceType() {
 		while (true) {
 			UI.clearScreen();
 			UI.printBoard(chessMatch);
 			System.out.print("Enter piece for promotion (B/N/R/Q): ");
 			String type = sc.nextLine().toUpperCase();
-			if (type.length() == 1 && "BNQR".contains(type))
+			if (type.length() == 1 && "BNQR".contains(type)) {
+				if (renderer != null)
+					renderer.invalidate();
 				return type;
+			}
 			else
 				System.out.print("Invalid Type! ");
 		}
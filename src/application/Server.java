@@ -0,0 +1,206 @@
+package application;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import chess.ChessMatch;
+import chess.Color;
+import chess.Move;
+import chess.exceptions.ChessException;
+
+/*
+ * Hosts any number of matches behind a line based TCP protocol. Every
+ * command gets one line back, "ok ..." or "error <message>":
+ *   create [fen]       ok <id>
+ *   move <id> <move>   ok <status>          coordinate notation, like e7e8q
+ *   state <id>         ok <status> <fen>
+ *   resign <id>        ok <result>          the side to move resigns
+ *   close <id>         ok
+ *   quit
+ * The status is "playing", "check" or the result once the game is over.
+ * Any connection can play any match. A match is locked only while one of its
+ * commands runs, so commands on different matches never wait for each other.
+ * A finished match can still be read until it is closed, by its client or
+ * when no command used it for IDLE_MINUTES, so the server keeps room for new
+ * matches.
+ * Usage: Server [port]
+ */
+public class Server {
+	private static final int DEFAULT_PORT = 5000;
+	private static final int BACKLOG = 1024;
+	private static final int MAX_MATCHES = 100_000;
+	// a connection only parses lines and plays moves, so a small stack lets
+	// thousands of them run
+	private static final long STACK_BYTES = 256 * 1024;
+	private static final long IDLE_MINUTES = 30;
+
+	private static final class HostedMatch {
+		private final long id;
+		private final ChessMatch chessMatch;
+		// worked out once per change, a resignation included
+		private String status;
+		private boolean closed;
+		private volatile long lastUsed = System.nanoTime();
+
+		private HostedMatch(long id, ChessMatch chessMatch) {
+			this.id = id;
+			this.chessMatch = chessMatch;
+			this.status = status(chessMatch);
+		}
+	}
+
+	private static final Map<Long, HostedMatch> matches = new ConcurrentHashMap<>();
+	// reserved before a match is put in matches, so creates racing each
+	// other can't go past MAX_MATCHES
+	private static final AtomicInteger hosted = new AtomicInteger();
+	private static final AtomicLong lastId = new AtomicLong();
+
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "idle-matches");
+			thread.setDaemon(true);
+			return thread;
+		});
+		sweeper.scheduleWithFixedDelay(Server::closeIdleMatches, 1, 1, TimeUnit.MINUTES);
+		try (ServerSocket server = new ServerSocket(port, BACKLOG)) {
+			System.out.println("Listening on port " + server.getLocalPort());
+			long connections = 0;
+			while (true) {
+				Socket socket = server.accept();
+				socket.setTcpNoDelay(true);
+				Thread thread = new Thread(null, () -> serve(socket), "connection-" + ++connections, STACK_BYTES);
+				thread.setDaemon(true);
+				thread.start();
+			}
+		}
+	}
+
+	private static void serve(Socket socket) {
+		try (socket;
+				BufferedReader in = new BufferedReader(
+						new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+				BufferedWriter out = new BufferedWriter(
+						new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII))) {
+			String line;
+			while ((line = in.readLine()) != null && !line.trim().equals("quit")) {
+				out.write(execute(line));
+				out.write('\n');
+				out.flush();
+			}
+		} catch (IOException e) {
+			// the client went away, its matches stay
+		}
+	}
+
+	static String execute(String line) {
+		String[] words = line.trim().split("\\s+");
+		try {
+			if (words[0].equals("create"))
+				return create(words.length > 1 ? line.trim().substring("create".length()).trim() : null);
+
+			HostedMatch match = words.length > 1 ? matches.get(Long.parseLong(words[1])) : null;
+			if (match == null)
+				return "error No such match";
+			synchronized (match) {
+				// closed while this command waited for the lock
+				if (match.closed)
+					return "error No such match";
+				match.lastUsed = System.nanoTime();
+				String reply = switch (words[0]) {
+					case "move" -> words.length == 3 ? move(match, words[2]) : "error Usage: move <id> <move>";
+					case "state" -> "ok " + match.status + " " + match.chessMatch.toFen();
+					case "resign" -> resign(match);
+					case "close" -> "ok";
+					default -> "error Unknown command " + words[0];
+				};
+				if (words[0].equals("close"))
+					close(match);
+				return reply;
+			}
+		} catch (NumberFormatException e) {
+			return "error Invalid match id";
+		} catch (ChessException e) {
+			return "error " + e.getMessage();
+		} catch (RuntimeException e) {
+			// a bug in one command must not end the connection without an answer
+			return "error " + e;
+		}
+	}
+
+	private static String create(String fen) {
+		ChessMatch chessMatch = fen == null ? new ChessMatch() : new ChessMatch(fen);
+		if (hosted.incrementAndGet() > MAX_MATCHES) {
+			hosted.decrementAndGet();
+			return "error The server is hosting " + MAX_MATCHES + " matches already";
+		}
+		long id = lastId.incrementAndGet();
+		matches.put(id, new HostedMatch(id, chessMatch));
+		return "ok " + id;
+	}
+
+	// the caller holds the lock of the match
+	private static void close(HostedMatch match) {
+		if (match.closed)
+			return;
+		match.closed = true;
+		matches.remove(match.id);
+		hosted.decrementAndGet();
+	}
+
+	private static void closeIdleMatches() {
+		long idle = TimeUnit.MINUTES.toNanos(IDLE_MINUTES);
+		for (HostedMatch match : matches.values()) {
+			if (System.nanoTime() - match.lastUsed < idle)
+				continue;
+			synchronized (match) {
+				if (System.nanoTime() - match.lastUsed >= idle)
+					close(match);
+			}
+		}
+	}
+
+	private static String move(HostedMatch match, String text) {
+		if (isOver(match))
+			return "error The game is over";
+		int move = Move.parse(text);
+		if (move == Move.NONE)
+			return "error Invalid move " + text;
+		match.chessMatch.performChessMove(move);
+		match.status = status(match.chessMatch);
+		return "ok " + match.status;
+	}
+
+	private static String resign(HostedMatch match) {
+		if (isOver(match))
+			return "error The game is over";
+		match.status = match.chessMatch.getCurrentPlayer() == Color.WHITE ? "0-1" : "1-0";
+		return "ok " + match.status;
+	}
+
+	private static boolean isOver(HostedMatch match) {
+		return !match.status.equals("playing") && !match.status.equals("check");
+	}
+
+	private static String status(ChessMatch chessMatch) {
+		// after checkmate the winner is still the current player
+		if (chessMatch.getCheckMate())
+			return chessMatch.getCurrentPlayer() == Color.WHITE ? "1-0" : "0-1";
+		if (chessMatch.getCheck())
+			return "check";
+		return chessMatch.generateMoves(new int[ChessMatch.MAX_MOVES]) == 0 ? "1/2-1/2" : "playing";
+	}
+}
@@ -1,5 +1,6 @@
 package application;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.InputMismatchException;
 import java.util.List;
@@ -109,6 +110,9 @@ public class UI {
 	public static final String CYAN_BACKGROUND = "\u001B[46m";
 	public static final String WHITE_BACKGROUND = "\u001B[47m";
 
+	private static final String NEWLINE = System.lineSeparator();
+	private static final int FRAME_CAPACITY = 4096;
+
 	public static void clearScreen() {
 		System.out.print("\033[H\033[2J");
 		System.out.flush();
@@ -126,116 +130,125 @@ public class UI {
 	}
 
 	public static void printMatch(ChessMatch chessMatch, List<ChessPiece> capturedPieces) {
-		printBoard(chessMatch);
-		System.out.println();
-		printCapturedPieces(capturedPieces);
-		System.out.println("\nTurn: " + chessMatch.getTurn());
+		StringBuilder sb = new StringBuilder(FRAME_CAPACITY);
+		appendBoard(sb, new BoardSnapshot(chessMatch, new boolean[chessMatch.getRows()][chessMatch.getColumns()]));
+		sb.append(NEWLINE);
+		appendStatus(sb, chessMatch, capturedPieces);
+		write(sb);
+	}
+
+	// lines of the whole match screen for DiffRenderer, each board row is split
+	// in one segment per square so the squares can be repainted one by one
+	public static List<String[]> matchLines(ChessMatch chessMatch, List<ChessPiece> capturedPieces,
+			boolean[][] possibleMovies) {
+		List<String[]> lines = boardLines(new BoardSnapshot(chessMatch, possibleMovies));
+		lines.add(new String[] { "" });
+		StringBuilder sb = new StringBuilder(FRAME_CAPACITY);
+		appendStatus(sb, chessMatch, capturedPieces);
+		for (String line : sb.toString().split(NEWLINE))
+			lines.add(new String[] { line });
+		return lines;
+	}
+
+	private static void appendStatus(StringBuilder sb, ChessMatch chessMatch, List<ChessPiece> capturedPieces) {
+		appendCapturedPieces(sb, capturedPieces);
+		sb.append(NEWLINE).append("Turn: ").append(chessMatch.getTurn()).append(NEWLINE);
 		if (!chessMatch.getCheckMate()) {
-			System.out.println("Waiting player: " + getUIColor(chessMatch.getCurrentPlayer(), FontType.PLAIN)
-					+ chessMatch.getCurrentPlayer() + RESET);
+			sb.append("Waiting player: ").append(getUIColor(chessMatch.getCurrentPlayer(), FontType.PLAIN))
+					.append(chessMatch.getCurrentPlayer()).append(RESET).append(NEWLINE);
 			if (chessMatch.getCheck()) {
-				System.out.println(RED + "CHECK!" + RESET);
+				sb.append(RED + "CHECK!" + RESET).append(NEWLINE);
 			}
 		} else {
-			System.out.println("CHECKMATE!");
-			System.out.println("Winner: " + getUIColor(chessMatch.getCurrentPlayer(), FontType.PLAIN)
-					+ chessMatch.getCurrentPlayer() + RESET);
+			sb.append("CHECKMATE!").append(NEWLINE);
+			sb.append("Winner: ").append(getUIColor(chessMatch.getCurrentPlayer(), FontType.PLAIN))
+					.append(chessMatch.getCurrentPlayer()).append(RESET).append(NEWLINE);
 		}
 	}
 
 	public static void printBoard(ChessMatch chessMatch) {
 		printBoard(chessMatch, new boolean[chessMatch.getRows()][chessMatch.getColumns()]);
-//		ChessPiece[][] pieces = chessMatch.getPieces();
-//		for (int i = 0; i < pieces.length; i++) {
-//			System.out.printf("%d ", 8 - i);
-//			for (int j = 0; j < pieces[0].length; j++) {
-//				printPiece(pieces[i][j], chessMatch, false);
-//			}
-//			System.out.println();
-//		}
-//		System.out.println("  a b c d e f g h ");
 	}
 
 	public static void printBoard(ChessMatch chessMatch, boolean[][] possibleMovies) {
-		ChessPiece[][] pieces = chessMatch.getPieces();
-		for (int i = 0; i < pieces.length; i++) {
+		StringBuilder sb = new StringBuilder(FRAME_CAPACITY);
+		appendBoard(sb, new BoardSnapshot(chessMatch, possibleMovies));
+		write(sb);
+	}
+
+	// the whole frame goes to the terminal in one write
+	private static void write(CharSequence frame) {
+		System.out.print(frame);
+		System.out.flush();
+	}
+
+	private static void appendBoard(StringBuilder sb, BoardSnapshot snapshot) {
+		for (String[] line : boardLines(snapshot)) {
+			for (String segment : line)
+				sb.append(segment);
+			sb.append(NEWLINE);
+		}
+	}
+
+	private static List<String[]> boardLines(BoardSnapshot snapshot) {
+		List<String[]> lines = new ArrayList<>();
+		StringBuilder cell = new StringBuilder();
+		for (int i = 0; i < 8; i++) {
+			String[] line = new String[18];
 			// White view
-			System.out.printf("%d ", 8 - i);
-			for (int j = 0; j < pieces[0].length; j++) {
-				printPiece(pieces[i][j], chessMatch, possibleMovies[i][j]);
+			line[0] = (8 - i) + " ";
+			for (int j = 0; j < 8; j++) {
+				cell.setLength(0);
+				appendPiece(cell, snapshot, i * 8 + j);
+				line[1 + j] = cell.toString();
 			}
 
 			// Black view
-			System.out.print(" ".repeat(10));
-			System.out.printf("%d ", i + 1);
-			for (int j = pieces[0].length - 1; j >= 0; j--) {
-				printPiece(pieces[7 - i][j], chessMatch, possibleMovies[7 - i][j]);
+			line[9] = " ".repeat(10) + (i + 1) + " ";
+			for (int j = 7; j >= 0; j--) {
+				cell.setLength(0);
+				appendPiece(cell, snapshot, (7 - i) * 8 + j);
+				line[17 - j] = cell.toString();
 			}
-
-			System.out.println();
+			lines.add(line);
 		}
-		System.out.println("  a b c d e f g h" + " ".repeat(13) + "h g f e d c b a  ");
+		lines.add(new String[] { "  a b c d e f g h" + " ".repeat(13) + "h g f e d c b a  " });
+		return lines;
 	}
 
-//	public static void printBoard(ChessMatch chessMatch, boolean[][] possibleMovies) {
-//		ChessPiece[][] pieces = chessMatch.getPieces();
-//		for (int i = 0; i < pieces.length; i++) {
-//			// White view
-//			if (chessMatch.getCurrentPlayer() == Color.WHITE) {
-//				System.out.printf("%d ", 8 - i);
-//				for (int j = 0; j < pieces[0].length; j++) {
-//					printPiece(pieces[i][j], chessMatch, possibleMovies[i][j]);
-//				}
-//			} else
-//			// Black view
-//			{
-//				System.out.printf("%d ", i + 1);
-//				for (int j = pieces[0].length - 1; j >= 0; j--) {
-//					printPiece(pieces[7 - i][j], chessMatch, possibleMovies[7 - i][j]);
-//				}
-//			}
-//			System.out.println();
-//		}
-//		if (chessMatch.getCurrentPlayer() == Color.WHITE)
-//			System.out.println("  a b c d e f g h");
-//		else
-//			System.out.println("  h g f e d c b a");
-//	}
-
-	private static void printPiece(ChessPiece piece, ChessMatch chessMatch, boolean highlight) {
-		if (highlight)
-			System.out.print(PURPLE_BACKGROUND);
+	private static void appendPiece(StringBuilder sb, BoardSnapshot snapshot, int square) {
+		if (snapshot.isHighlighted(square))
+			sb.append(PURPLE_BACKGROUND);
 
+		ChessPiece piece = snapshot.getPiece(square);
 		if (piece == null) {
-			System.out.print("-");
+			sb.append('-');
 		} else {
-			if (chessMatch.testCheck(piece.getColor()) && piece.isThereAnyPossibleMove()
-					&& !chessMatch.getCheckMate()) {
-				System.out.print(
-						piece instanceof King ? RED_UNDERLINED : getUIColor(piece.getColor(), FontType.UNDERLINED));
+			if (snapshot.isMovable(square)) {
+				sb.append(piece instanceof King ? RED_UNDERLINED : getUIColor(piece.getColor(), FontType.UNDERLINED));
 			}
-			if (piece instanceof King k && chessMatch.testCheck(k)) {
+			if (snapshot.isCheckedKing(square)) {
 				// if it's in check
-				System.out.print(RED);
+				sb.append(RED);
 			} else {
-				System.out.print(getUIColor(piece.getColor(), FontType.PLAIN));
+				sb.append(getUIColor(piece.getColor(), FontType.PLAIN));
 			}
-			System.out.print(piece);
+			sb.append(piece);
 		}
-		System.out.print(RESET + " ");
+		sb.append(RESET + " ");
 	}
 
-	private static void printCapturedPieces(List<ChessPiece> capturedPieces) {
+	private static void appendCapturedPieces(StringBuilder sb, List<ChessPiece> capturedPieces) {
 		List<ChessPiece> whites = capturedPieces.stream().filter(x -> x.getColor() == Color.WHITE)
 				.collect(Collectors.toList());
 		List<ChessPiece> blacks = capturedPieces.stream().filter(x -> x.getColor() == Color.BLACK)
 				.collect(Collectors.toList());
 
-		System.out.println("Captured pieces:");
-		System.out.println(
-				"White: " + getUIColor(Color.WHITE, FontType.PLAIN) + Arrays.toString(whites.toArray()) + RESET);
-		System.out.println(
-				"Black: " + getUIColor(Color.BLACK, FontType.PLAIN) + Arrays.toString(blacks.toArray()) + RESET);
+		sb.append("Captured pieces:").append(NEWLINE);
+		sb.append("White: ").append(getUIColor(Color.WHITE, FontType.PLAIN)).append(Arrays.toString(whites.toArray()))
+				.append(RESET).append(NEWLINE);
+		sb.append("Black: ").append(getUIColor(Color.BLACK, FontType.PLAIN)).append(Arrays.toString(blacks.toArray()))
+				.append(RESET).append(NEWLINE);
 	}
 
 	public static String getUIColor(Color color, FontType type) {
@@ -0,0 +1,253 @@
+package application;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import chess.ChessMatch;
+import chess.Color;
+import chess.Move;
+import chess.book.OpeningBook;
+import chess.engine.Engine;
+import chess.engine.SearchResult;
+import chess.engine.TranspositionTable;
+import chess.exceptions.ChessException;
+import chess.tablebase.Tablebases;
+
+/*
+ * UCI front end over standard input and output, for GUIs and tournament
+ * managers. The main thread only reads commands and searches run on a thread
+ * of their own, so stop and isready are answered while a move is computed.
+ * Usage: Uci [--book file] [--tablebases directory]
+ */
+public class Uci {
+	private static final int DEFAULT_HASH_MEGABYTES = 16;
+	private static final int MAX_HASH_MEGABYTES = 1024;
+	private static final int DEFAULT_MOVES_TO_GO = 30;
+	// kept back from every time budget for the answer to reach the GUI
+	private static final long OVERHEAD_MILLIS = 20;
+	private static final long DEFAULT_MOVE_MILLIS = 1000;
+	private static final long INFINITE_MILLIS = 365L * 24 * 60 * 60 * 1000;
+
+	private final ExecutorService searcher = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "search");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final Random random = new Random();
+	private Engine engine = new Engine(new TranspositionTable(DEFAULT_HASH_MEGABYTES));
+	private OpeningBook book; // null without --book
+	private Tablebases tablebases; // null without --tablebases
+	private ChessMatch chessMatch = new ChessMatch();
+	private Future<?> search; // the last search started
+	private CountDownLatch stopSignal; // lets an infinite search answer
+
+	public static void main(String[] args) throws IOException {
+		Uci uci = new Uci();
+		for (int i = 0; i < args.length - 1; i++) {
+			if (args[i].equals("--book"))
+				uci.book = new OpeningBook(Path.of(args[i + 1]));
+			else if (args[i].equals("--tablebases"))
+				uci.tablebases = new Tablebases(Path.of(args[i + 1]));
+		}
+		uci.engine.setTablebases(uci.tablebases);
+
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+		String line;
+		while ((line = in.readLine()) != null && uci.execute(line.trim().split("\\s+")))
+			;
+		uci.stop();
+	}
+
+	// false on quit
+	private boolean execute(String[] words) {
+		switch (words[0]) {
+			case "uci" -> {
+				send("id name Xadrez");
+				send("id author Yuyake23");
+				send("option name Hash type spin default " + DEFAULT_HASH_MEGABYTES + " min 1 max "
+						+ MAX_HASH_MEGABYTES);
+				send("uciok");
+			}
+			case "isready" -> send("readyok");
+			case "setoption" -> setOption(words);
+			case "ucinewgame" -> {
+				stopSearch();
+				engine.getTable().clear();
+			}
+			case "position" -> position(words);
+			case "go" -> go(words);
+			case "stop" -> stop();
+			case "quit" -> {
+				return false;
+			}
+			default -> {
+				// unknown commands are ignored, as the protocol asks
+			}
+		}
+		return true;
+	}
+
+	private void setOption(String[] words) {
+		int name = Arrays.asList(words).indexOf("name");
+		int value = Arrays.asList(words).indexOf("value");
+		if (name < 0 || value < 0 || value + 1 >= words.length || !words[name + 1].equalsIgnoreCase("Hash"))
+			return;
+		int megabytes;
+		try {
+			megabytes = Math.max(1, Math.min(MAX_HASH_MEGABYTES, Integer.parseInt(words[value + 1])));
+		} catch (NumberFormatException e) {
+			send("info string Invalid Hash value " + words[value + 1]);
+			return;
+		}
+		stopSearch();
+		engine = new Engine(new TranspositionTable(megabytes));
+		engine.setTablebases(tablebases);
+	}
+
+	// position startpos|fen <fen> [moves <move>...]
+	private void position(String[] words) {
+		stopSearch();
+		int moves = Arrays.asList(words).indexOf("moves");
+		int end = moves < 0 ? words.length : moves;
+		try {
+			chessMatch = words.length > 1 && words[1].equals("fen")
+					? new ChessMatch(String.join(" ", Arrays.copyOfRange(words, 2, end)))
+					: new ChessMatch();
+			for (int i = end + 1; i < words.length; i++)
+				chessMatch.performChessMove(Move.parse(words[i]));
+		} catch (ChessException e) {
+			send("info string " + e.getMessage());
+		} catch (RuntimeException e) {
+			send("info string " + e);
+		}
+	}
+
+	// go [wtime n] [btime n] [winc n] [binc n] [movestogo n] [movetime n] [depth n] [infinite]
+	private void go(String[] words) {
+		stopSearch();
+		long[] time = new long[Color.values().length];
+		long[] increment = new long[time.length];
+		Arrays.fill(time, -1);
+		long movesToGo = DEFAULT_MOVES_TO_GO;
+		long moveTime = -1;
+		int depth = Engine.MAX_PLY;
+		boolean infinite = false;
+		for (int i = 1; i < words.length; i++) {
+			String option = words[i];
+			long value = i + 1 < words.length && words[i + 1].matches("-?\\d+") ? Long.parseLong(words[i + 1]) : 0;
+			switch (option) {
+				case "wtime" -> time[Color.WHITE.ordinal()] = value;
+				case "btime" -> time[Color.BLACK.ordinal()] = value;
+				case "winc" -> increment[Color.WHITE.ordinal()] = value;
+				case "binc" -> increment[Color.BLACK.ordinal()] = value;
+				case "movestogo" -> movesToGo = Math.max(1, value);
+				case "movetime" -> moveTime = value;
+				case "depth" -> depth = (int) Math.max(1, Math.min(Engine.MAX_PLY, value));
+				case "infinite" -> infinite = true;
+				default -> {
+					continue;
+				}
+			}
+			if (!option.equals("infinite"))
+				i++;
+		}
+
+		int player = chessMatch.getCurrentPlayer().ordinal();
+		long millis;
+		if (infinite)
+			millis = INFINITE_MILLIS;
+		else if (moveTime >= 0)
+			millis = moveTime - OVERHEAD_MILLIS;
+		else if (time[player] >= 0)
+			millis = Math.min(time[player] / movesToGo + increment[player] * 3 / 4, time[player] / 2)
+					- OVERHEAD_MILLIS;
+		else
+			millis = depth < Engine.MAX_PLY ? INFINITE_MILLIS : DEFAULT_MOVE_MILLIS;
+		long budget = Math.max(1, millis);
+		int maxDepth = depth;
+		boolean waitForStop = infinite;
+
+		ChessMatch position = chessMatch;
+		CountDownLatch signal = new CountDownLatch(1);
+		stopSignal = signal;
+		engine.clearStop();
+		search = searcher.submit(() -> {
+			int bookMove = Move.NONE;
+			SearchResult result = null;
+			try {
+				if (book != null && !waitForStop)
+					bookMove = book.pick(position, new int[ChessMatch.MAX_MOVES], new int[ChessMatch.MAX_MOVES],
+							random.nextDouble());
+				if (bookMove == Move.NONE)
+					result = engine.search(position, budget, maxDepth);
+			} catch (RuntimeException e) {
+				// the GUI still gets its bestmove, 0000 when there is none
+				send("info string " + e);
+			}
+			// an infinite search answers only once it is stopped
+			if (waitForStop) {
+				try {
+					signal.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			if (result != null)
+				send(info(result));
+			int move = result == null ? bookMove : result.bestMove();
+			send("bestmove " + (move == Move.NONE ? "0000" : Move.toString(move)));
+		});
+	}
+
+	private void stop() {
+		engine.stop();
+		if (stopSignal != null)
+			stopSignal.countDown();
+	}
+
+	// a command that changes the position or the engine stops the search the
+	// GUI should have stopped and waits for its bestmove, which takes no longer
+	// than one node
+	private void stopSearch() {
+		if (search == null)
+			return;
+		stop();
+		try {
+			search.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			send("info string " + e.getCause());
+		}
+	}
+
+	private static String info(SearchResult result) {
+		StringBuilder sb = new StringBuilder("info depth ").append(result.depth()).append(" score ");
+		if (result.isMate()) {
+			int plies = Engine.MATE - Math.abs(result.score());
+			sb.append("mate ").append(result.score() > 0 ? (plies + 1) / 2 : -(plies + 1) / 2);
+		} else {
+			sb.append("cp ").append(result.score());
+		}
+		sb.append(" nodes ").append(result.nodes()).append(" time ").append(result.millis());
+		if (result.millis() > 0)
+			sb.append(" nps ").append(result.nodes() * 1000 / result.millis());
+		if (result.principalVariation().length > 0)
+			sb.append(" pv ").append(result.principalVariationText());
+		return sb.toString();
+	}
+
+	private static synchronized void send(String line) {
+		System.out.println(line);
+		System.out.flush();
+	}
+}
@@ -0,0 +1,110 @@
+package application;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import chess.validation.GameValidator;
+import chess.validation.Verdict;
+
+/*
+ * Validates files of games in coordinate notation, a game per line (see
+ * GameValidator), on a pool of threads. As in PgnReplay the reader hands
+ * games over through a bounded queue and replays them itself when it is
+ * full, so the reader never gets far ahead of the validation. With -verdicts
+ * every verdict is written to a file as "file:line verdict", otherwise only
+ * the first rejections are printed.
+ * Usage: Validate file... [-threads n] [-verdicts file]
+ */
+public class Validate {
+	private static final int QUEUED_GAMES_PER_THREAD = 64;
+	private static final int MAX_REPORTED_ERRORS = 20;
+
+	private static final GameValidator validator = new GameValidator();
+	private static final LongAdder games = new LongAdder();
+	private static final LongAdder plies = new LongAdder();
+	private static final LongAdder rejected = new LongAdder();
+	private static final Map<String, LongAdder> results = new ConcurrentHashMap<>();
+	private static Writer verdicts; // null without -verdicts
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		for (int i = 0; i < args.length - 1; i++) {
+			if (args[i].equals("-threads"))
+				threads = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("-verdicts"))
+				verdicts = new BufferedWriter(Files.newBufferedWriter(Path.of(args[i + 1])), 1 << 16);
+		}
+
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(threads * QUEUED_GAMES_PER_THREAD), new ThreadPoolExecutor.CallerRunsPolicy());
+
+		long start = System.nanoTime();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-threads") || args[i].equals("-verdicts")) {
+				i++;
+				continue;
+			}
+			String file = args[i];
+			try (BufferedReader reader = new BufferedReader(
+					new InputStreamReader(Files.newInputStream(Path.of(file)), StandardCharsets.UTF_8), 1 << 16)) {
+				String line;
+				long number = 0;
+				while ((line = reader.readLine()) != null) {
+					number++;
+					if (line.isBlank() || line.startsWith("#"))
+						continue;
+					String game = line;
+					long n = number;
+					executor.execute(() -> validate(file, n, game));
+				}
+			}
+		}
+		executor.shutdown();
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+		long elapsed = Math.max(System.nanoTime() - start, 1);
+		if (verdicts != null)
+			verdicts.close();
+
+		System.out.printf("%,d games, %,d plies, %,d rejected in %.3f s (%,d games/min, %,d plies/s)%n",
+				games.sum(), plies.sum(), rejected.sum(), elapsed / 1e9, games.sum() * 60_000_000_000L / elapsed,
+				plies.sum() * 1_000_000_000L / elapsed);
+		new TreeMap<>(results).forEach((result, count) -> System.out.printf("  %-8s %,d%n", result, count.sum()));
+		if (rejected.sum() > 0)
+			System.exit(1);
+	}
+
+	private static void validate(String file, long number, String line) {
+		Verdict verdict = validator.validate(number, line);
+		games.increment();
+		plies.add(verdict.plies());
+		if (verdict.isLegal()) {
+			results.computeIfAbsent(verdict.result(), r -> new LongAdder()).increment();
+		} else {
+			rejected.increment();
+			if (verdicts == null && rejected.sum() <= MAX_REPORTED_ERRORS)
+				System.err.println(file + ":" + number + " " + verdict);
+		}
+		if (verdicts != null) {
+			synchronized (verdicts) {
+				try {
+					verdicts.write(file + ":" + number + " " + verdict + "\n");
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		}
+	}
+}
@@ -4,13 +4,23 @@ public class Board {
 	private final int rows;
 	private final int columns;
 	private Piece[][] pieces;
+	private Position[] squares;
+	private long[] bitboards;
+	private long occupied;
 
-	public Board(int rows, int columns) {
+	public Board(int rows, int columns, int pieceKinds) {
 		if (rows < 1 || columns < 1)
 			throw new BoardException("Error creating board: there must be at least 1 row and 1 column");
+		if (rows * columns > Long.SIZE)
+			throw new BoardException("Error creating board: there must be at most " + Long.SIZE + " squares");
 		this.rows = rows;
 		this.columns = columns;
 		this.pieces = new Piece[rows][columns];
+		this.bitboards = new long[pieceKinds];
+		this.squares = new Position[rows * columns];
+		for (int i = 0; i < rows; i++)
+			for (int j = 0; j < columns; j++)
+				this.squares[square(i, j)] = new Position(i, j);
 	}
 
 	public int getRows() {
@@ -33,22 +43,42 @@ public class Board {
 		return pieces[position.getRow()][position.getColumn()];
 	}
 
+	// no bounds check, the square must come from square() or a bitboard
+	public Piece pieceAt(int square) {
+		return pieces[square / columns][square % columns];
+	}
+
 	public void placePiece(Piece piece, Position position) {
 		if (thereIsAPiece(position))
 			throw new BoardException("There is already a piece on position " + position);
+		placePiece(piece, square(position));
+	}
+
+	public void placePiece(Piece piece, int square) {
+		Position position = squares[square];
 		this.pieces[position.getRow()][position.getColumn()] = piece;
 		piece.position = position;
+		long bit = 1L << square;
+		occupied |= bit;
+		bitboards[piece.getBitboardIndex()] |= bit;
 	}
 
 	public Piece removePiece(Position position) {
 		if (!positionExists(position))
 			throw new BoardException("Position are not on the board");
+		return removePiece(square(position));
+	}
 
-		Piece a = piece(position);
+	public Piece removePiece(int square) {
+		Position position = squares[square];
+		Piece a = pieces[position.getRow()][position.getColumn()];
 		if (a == null)
 			return null;
 		a.position = null;
 		pieces[position.getRow()][position.getColumn()] = null;
+		long bit = 1L << square;
+		occupied &= ~bit;
+		bitboards[a.getBitboardIndex()] &= ~bit;
 		return a;
 	}
 
@@ -65,4 +95,29 @@ public class Board {
 			throw new BoardException("Position are not on the board");
 		return piece(position) != null;
 	}
+
+	public int square(int row, int column) {
+		return row * columns + column;
+	}
+
+	public int square(Position position) {
+		return square(position.getRow(), position.getColumn());
+	}
+
+	// shared instance, callers must not change it
+	public Position position(int square) {
+		return squares[square];
+	}
+
+	public boolean isOccupied(int square) {
+		return (occupied >>> square & 1L) != 0;
+	}
+
+	public long getOccupied() {
+		return occupied;
+	}
+
+	public long getBitboard(int pieceKind) {
+		return bitboards[pieceKind];
+	}
 }
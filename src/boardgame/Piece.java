@@ -25,6 +25,9 @@ public abstract class Piece {
 		return board;
 	}
 
+	// which of the board bitboards keeps this piece
+	public abstract int getBitboardIndex();
+
 	public abstract boolean[][] getAllPossibleMoves();
 	
 	// hook method
@@ -0,0 +1,168 @@
+package chess;
+
+import boardgame.Board;
+
+/*
+ * Square indexes follow Board.square(row, column): 0 is a8, 7 is h8, 56 is a1
+ * and 63 is h1. Each direction keeps the squares a slider would cross from a
+ * given square on an empty board.
+ */
+public final class Bitboards {
+	public static final int SQUARES = 64;
+	public static final int KINDS = Color.values().length * PieceType.values().length;
+
+	private static final int TYPES = PieceType.values().length;
+
+	private static final int NORTH = 0;
+	private static final int NORTH_EAST = 1;
+	private static final int EAST = 2;
+	private static final int SOUTH_EAST = 3;
+	private static final int SOUTH = 4;
+	private static final int SOUTH_WEST = 5;
+	private static final int WEST = 6;
+	private static final int NORTH_WEST = 7;
+
+	private static final int[] ROW_STEPS = { -1, -1, 0, 1, 1, 1, 0, -1 };
+	private static final int[] COLUMN_STEPS = { 0, 1, 1, 1, 0, -1, -1, -1 };
+
+	private static final long[][] RAYS = new long[8][SQUARES];
+	private static final long[] KNIGHT_ATTACKS = new long[SQUARES];
+	private static final long[] KING_ATTACKS = new long[SQUARES];
+	private static final long[][] PAWN_ATTACKS = new long[2][SQUARES];
+	private static final long[][] BETWEEN = new long[SQUARES][SQUARES];
+	private static final long[][] LINE = new long[SQUARES][SQUARES];
+
+	static {
+		int[][] knightSteps = { { 1, 2 }, { 2, 1 }, { -1, 2 }, { -2, 1 }, { 1, -2 }, { 2, -1 }, { -1, -2 }, { -2, -1 } };
+		for (int square = 0; square < SQUARES; square++) {
+			int row = square >>> 3;
+			int column = square & 7;
+
+			for (int dir = 0; dir < 8; dir++) {
+				int r = row + ROW_STEPS[dir];
+				int c = column + COLUMN_STEPS[dir];
+				if (exists(r, c))
+					KING_ATTACKS[square] |= bit(r, c);
+				while (exists(r, c)) {
+					RAYS[dir][square] |= bit(r, c);
+					r += ROW_STEPS[dir];
+					c += COLUMN_STEPS[dir];
+				}
+			}
+
+			for (int[] step : knightSteps)
+				if (exists(row + step[0], column + step[1]))
+					KNIGHT_ATTACKS[square] |= bit(row + step[0], column + step[1]);
+
+			// white pawns move toward row 0, black pawns toward row 7
+			for (int c = column - 1; c <= column + 1; c += 2) {
+				if (exists(row - 1, c))
+					PAWN_ATTACKS[Color.WHITE.ordinal()][square] |= bit(row - 1, c);
+				if (exists(row + 1, c))
+					PAWN_ATTACKS[Color.BLACK.ordinal()][square] |= bit(row + 1, c);
+			}
+		}
+
+		// squares strictly between two aligned squares and the whole line through them
+		for (int square = 0; square < SQUARES; square++) {
+			for (int dir = 0; dir < 8; dir++) {
+				long line = RAYS[dir][square] | RAYS[(dir + 4) % 8][square] | bit(square);
+				for (long ray = RAYS[dir][square]; ray != 0; ray &= ray - 1) {
+					int target = Long.numberOfTrailingZeros(ray);
+					BETWEEN[square][target] = RAYS[dir][square] & ~RAYS[dir][target] & ~bit(target);
+					LINE[square][target] = line;
+				}
+			}
+		}
+	}
+
+	private Bitboards() {
+	}
+
+	private static boolean exists(int row, int column) {
+		return row >= 0 && row < 8 && column >= 0 && column < 8;
+	}
+
+	private static long bit(int row, int column) {
+		return 1L << (row * 8 + column);
+	}
+
+	public static long bit(int square) {
+		return 1L << square;
+	}
+
+	public static boolean contains(long bitboard, int square) {
+		return (bitboard >>> square & 1L) != 0;
+	}
+
+	public static int index(Color color, PieceType type) {
+		return color.ordinal() * TYPES + type.ordinal();
+	}
+
+	public static long occupancy(Board board, Color color) {
+		int first = index(color, PieceType.PAWN);
+		return board.getBitboard(first) | board.getBitboard(first + 1) | board.getBitboard(first + 2)
+				| board.getBitboard(first + 3) | board.getBitboard(first + 4) | board.getBitboard(first + 5);
+	}
+
+	public static long pieces(Board board, Color color, PieceType type) {
+		return board.getBitboard(index(color, type));
+	}
+
+	public static long knightAttacks(int square) {
+		return KNIGHT_ATTACKS[square];
+	}
+
+	public static long kingAttacks(int square) {
+		return KING_ATTACKS[square];
+	}
+
+	public static long pawnAttacks(Color color, int square) {
+		return PAWN_ATTACKS[color.ordinal()][square];
+	}
+
+	// empty when the squares are not on the same row, column or diagonal
+	public static long between(int from, int to) {
+		return BETWEEN[from][to];
+	}
+
+	public static long line(int from, int to) {
+		return LINE[from][to];
+	}
+
+	public static long rookAttacks(int square, long occupied) {
+		return ray(NORTH, square, occupied) | ray(EAST, square, occupied) | ray(SOUTH, square, occupied)
+				| ray(WEST, square, occupied);
+	}
+
+	public static long bishopAttacks(int square, long occupied) {
+		return ray(NORTH_EAST, square, occupied) | ray(SOUTH_EAST, square, occupied)
+				| ray(SOUTH_WEST, square, occupied) | ray(NORTH_WEST, square, occupied);
+	}
+
+	public static long queenAttacks(int square, long occupied) {
+		return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+	}
+
+	private static long ray(int dir, int square, long occupied) {
+		long ray = RAYS[dir][square];
+		long blockers = ray & occupied;
+		if (blockers != 0) {
+			// east and the southern directions grow the square index, the others shrink it
+			int blocker = dir >= EAST && dir <= SOUTH_WEST ? Long.numberOfTrailingZeros(blockers)
+					: 63 - Long.numberOfLeadingZeros(blockers);
+			ray ^= RAYS[dir][blocker];
+		}
+		return ray;
+	}
+
+	public static boolean[][] toMatrix(long bitboard) {
+		boolean[][] mat = new boolean[8][8];
+		while (bitboard != 0) {
+			int square = Long.numberOfTrailingZeros(bitboard);
+			mat[square >>> 3][square & 7] = true;
+			bitboard &= bitboard - 1;
+		}
+		return mat;
+	}
+}
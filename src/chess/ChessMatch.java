@@ -1,15 +1,22 @@
 package chess;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
-import application.Program;
-import application.UI;
 import boardgame.Board;
 import boardgame.Piece;
 import boardgame.Position;
+import chess.engine.Engine;
+import chess.engine.TranspositionTable;
 import chess.exceptions.ChessException;
+import chess.metrics.EngineMetrics;
 import chess.pieces.Bishop;
 import chess.pieces.King;
 import chess.pieces.Knight;
@@ -18,21 +25,239 @@ import chess.pieces.Queen;
 import chess.pieces.Rook;
 
 public class ChessMatch {
+	// big enough for the pseudo-legal moves of any position
+	public static final int MAX_MOVES = 256;
+
+	public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+	private static final int ANALYSIS_TABLE_MEGABYTES = 64;
+
+	private static final Color[] COLORS = Color.values();
+
+	// -Dchess.debugPositionKey=true compares the position key with a full
+	// recomputation after every move
+	private static final boolean DEBUG_POSITION_KEY = Boolean.getBoolean("chess.debugPositionKey");
+
+	// squares of the kings and rooks that still may castle
+	private static final long CASTLING_SQUARES = 0x9100000000000091L;
+	// rank 8 and rank 1, where no pawn can stand
+	private static final long BACK_RANKS = 0xFF000000000000FFL;
+
 	private Board board;
 	private int turn;
+	private int halfmoveClock; // plies since the last capture or pawn move
+	private String initialFen;
+
+	// moves played through performChessMove, in order, followed by the ones
+	// taken back that redo can play again
+	private int[] history = new int[64];
+	private int historySize;
+	private int redoSize;
+	// undo record of each move in history: the halfmove clock before it
+	// shifted left once plus the check flag, the pawn that was vulnerable to
+	// en passant and the pawn that promoted
+	private int[] historyUndo = new int[64];
+	private ChessPiece[] historyEnPassant = new ChessPiece[64];
+	private Pawn[] historyPromotions = new Pawn[64];
+	// position key after each move in history and before the first one, for
+	// repetitions across the game
+	private long[] historyKeys = new long[64];
+	private long initialPositionKey;
+	// copies can't take back the moves made before they were copied
+	private int firstUndoable;
 	private Color currentPlayer;
 	private boolean check; // is false by default
 	private boolean checkMate;
 	private ChessPiece enPassantVulnerable;
 
-	private List<Piece> piecesOnTheBoard = new ArrayList<>();
+	// kings are never captured, so they are found once when they are placed
+	private final King[] kings = new King[COLORS.length];
 	private List<Piece> capturedPieces = new ArrayList<>();
 
+	// squares attacked by the piece standing on each square, and by each color
+	private long[] attacksFrom = new long[Bitboards.SQUARES];
+	private long[] attackedBy = new long[COLORS.length];
+
+	// the position after the last performed move, for readers on other threads
+	private volatile PositionSnapshot snapshot;
+
+	// Zobrist key of the position, with the parts of it that are kept apart
+	private long positionKey;
+	private int castlingRights;
+	private long enPassantKey;
+
+	// undo records of the moves played by playMove, one entry per ply
+	private int ply;
+	private int[] playedMoves = new int[64];
+	private Piece[] playedCaptures = new Piece[64];
+	private ChessPiece[] previousEnPassantVulnerable = new ChessPiece[64];
+	private boolean[] previousCheck = new boolean[64];
+	private Pawn[] promotedPawns = new Pawn[64];
+	private int[] previousHalfmoveClock = new int[64];
+
 	public ChessMatch() {
-		this.board = new Board(8, 8);
+		this.board = new Board(8, 8, Bitboards.KINDS);
 		this.turn = 1;
 		this.currentPlayer = Color.WHITE;
+		this.initialFen = START_FEN;
 		initialSetup();
+		updateAttacks(~0L);
+		resetPositionKey();
+		initialPositionKey = positionKey;
+		snapshot = takeSnapshot();
+	}
+
+	// independent copy, so the same position can be worked on by other threads
+	public ChessMatch(ChessMatch other) {
+		this.board = new Board(other.getRows(), other.getColumns(), Bitboards.KINDS);
+		this.turn = other.turn;
+		this.halfmoveClock = other.halfmoveClock;
+		this.initialFen = other.initialFen;
+		this.history = Arrays.copyOf(other.history, other.history.length);
+		this.historySize = other.historySize;
+		this.redoSize = other.historySize;
+		this.firstUndoable = other.historySize;
+		this.historyUndo = new int[history.length];
+		this.historyEnPassant = new ChessPiece[history.length];
+		this.historyPromotions = new Pawn[history.length];
+		this.historyKeys = Arrays.copyOf(other.historyKeys, history.length);
+		this.initialPositionKey = other.initialPositionKey;
+		this.currentPlayer = other.currentPlayer;
+		this.check = other.check;
+		this.checkMate = other.checkMate;
+		for (long occupied = other.board.getOccupied(); occupied != 0; occupied &= occupied - 1) {
+			int square = Long.numberOfTrailingZeros(occupied);
+			ChessPiece p = (ChessPiece) other.board.pieceAt(square);
+			ChessPiece piece = copyPiece(p);
+			placePiece(piece, square);
+			if (p == other.enPassantVulnerable)
+				this.enPassantVulnerable = piece;
+		}
+		for (Piece p : other.capturedPieces)
+			capturedPieces.add(copyPiece((ChessPiece) p));
+		updateAttacks(~0L);
+		resetPositionKey();
+		snapshot = takeSnapshot();
+	}
+
+	/*
+	 * Position in Forsyth-Edwards Notation, the move counters may be left out.
+	 * Castling rights become the move counts of the kings and rooks, a pawn
+	 * off its initial row counts as moved and the en passant target gives the
+	 * pawn that is vulnerable.
+	 */
+	public ChessMatch(CharSequence fen) {
+		this.board = new Board(8, 8, Bitboards.KINDS);
+		this.initialFen = fen.toString();
+		int length = fen.length();
+		int i = skipSpaces(fen, 0);
+
+		// piece placement, from a8 to h1
+		int row = 0;
+		int column = 0;
+		for (; i < length && fen.charAt(i) != ' '; i++) {
+			char c = fen.charAt(i);
+			if (c == '/') {
+				if (column != 8 || ++row > 7)
+					throw invalidFen(fen, "piece placement");
+				column = 0;
+			} else if (c >= '1' && c <= '8') {
+				column += c - '0';
+			} else {
+				if (column > 7)
+					throw invalidFen(fen, "piece placement");
+				ChessPiece piece = newPiece(fenType(c, fen), Character.isUpperCase(c) ? Color.WHITE : Color.BLACK);
+				placePiece(piece, row * 8 + column++);
+			}
+			if (column > 8)
+				throw invalidFen(fen, "piece placement");
+		}
+		if (row != 7 || column != 8)
+			throw invalidFen(fen, "piece placement");
+		for (Color color : COLORS)
+			if (Long.bitCount(Bitboards.pieces(board, color, PieceType.KING)) != 1)
+				throw invalidFen(fen, "kings");
+		for (Color color : COLORS)
+			if ((Bitboards.pieces(board, color, PieceType.PAWN) & BACK_RANKS) != 0)
+				throw invalidFen(fen, "pawns on the first or last rank");
+
+		// side to move
+		i = skipSpaces(fen, i);
+		if (i >= length || (fen.charAt(i) != 'w' && fen.charAt(i) != 'b'))
+			throw invalidFen(fen, "side to move");
+		Color sideToMove = fen.charAt(i++) == 'w' ? Color.WHITE : Color.BLACK;
+
+		// castling rights
+		int rights = 0;
+		i = skipSpaces(fen, i);
+		if (i < length && fen.charAt(i) == '-') {
+			i++;
+		} else {
+			for (; i < length && fen.charAt(i) != ' '; i++) {
+				rights |= switch (fen.charAt(i)) {
+					case 'K' -> Zobrist.WHITE_KINGSIDE;
+					case 'Q' -> Zobrist.WHITE_QUEENSIDE;
+					case 'k' -> Zobrist.BLACK_KINGSIDE;
+					case 'q' -> Zobrist.BLACK_QUEENSIDE;
+					default -> throw invalidFen(fen, "castling rights");
+				};
+			}
+		}
+		setMoveCounts(rights);
+		if (castlingRights() != rights)
+			throw invalidFen(fen, "castling rights without their king or rook");
+
+		// #specialmove en passant target, the square the pawn passed over
+		i = skipSpaces(fen, i);
+		if (i < length && fen.charAt(i) == '-') {
+			i++;
+		} else {
+			if (i + 1 >= length || fen.charAt(i) < 'a' || fen.charAt(i) > 'h'
+					|| fen.charAt(i + 1) != (sideToMove == Color.WHITE ? '6' : '3'))
+				throw invalidFen(fen, "en passant target");
+			int target = board.square('8' - fen.charAt(i + 1), fen.charAt(i) - 'a');
+			ChessPiece pawn = (ChessPiece) board.pieceAt(sideToMove == Color.WHITE ? target + 8 : target - 8);
+			if (!(pawn instanceof Pawn) || pawn.getColor() == sideToMove)
+				throw invalidFen(fen, "en passant target without a pawn");
+			// the pawn passed over the target from the square behind it
+			if (board.isOccupied(target) || board.isOccupied(sideToMove == Color.WHITE ? target - 8 : target + 8))
+				throw invalidFen(fen, "en passant target on an occupied square");
+			enPassantVulnerable = pawn;
+			i += 2;
+		}
+
+		// move counters
+		i = skipSpaces(fen, i);
+		int halfmove = 0;
+		int fullmove = 1;
+		if (i < length) {
+			halfmove = fenNumber(fen, i);
+			i = skipSpaces(fen, skipDigits(fen, i));
+			if (i < length) {
+				fullmove = fenNumber(fen, i);
+				i = skipSpaces(fen, skipDigits(fen, i));
+			}
+		}
+		if (i < length || fullmove < 1)
+			throw invalidFen(fen, "move counters");
+		this.halfmoveClock = halfmove;
+		this.turn = 2 * (fullmove - 1) + (sideToMove == Color.WHITE ? 1 : 2);
+		this.currentPlayer = sideToMove;
+
+		updateAttacks(~0L);
+		// the side to move could capture the king
+		if (testCheck(opponent(currentPlayer)))
+			throw invalidFen(fen, "side to move, the other king is in check");
+		this.check = testCheck(currentPlayer);
+		if (check && testCheckMate(currentPlayer)) {
+			// a finished match keeps the winner as the current player
+			this.checkMate = true;
+			this.currentPlayer = opponent(currentPlayer);
+			this.turn--;
+		}
+		resetPositionKey();
+		initialPositionKey = positionKey;
+		snapshot = takeSnapshot();
 	}
 
 	public int getColumns() {
@@ -47,6 +272,20 @@ public class ChessMatch {
 		return turn;
 	}
 
+	public int getHalfmoveClock() {
+		return halfmoveClock;
+	}
+
+	// FEN of the position the match started from
+	public String getInitialFen() {
+		return initialFen;
+	}
+
+	// packed moves played through performChessMove since the initial position
+	public int[] getMoveHistory() {
+		return Arrays.copyOf(history, historySize);
+	}
+
 	public Color getCurrentPlayer() {
 		return currentPlayer;
 	}
@@ -63,6 +302,36 @@ public class ChessMatch {
 		return enPassantVulnerable;
 	}
 
+	public long getPositionKey() {
+		return positionKey;
+	}
+
+	/*
+	 * The position as of the end of the last performed move, safe to read
+	 * from any thread while the match goes on. Moves played by playMove are
+	 * not published.
+	 */
+	public PositionSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	public ChessPiece getPiece(int square) {
+		return (ChessPiece) board.pieceAt(square);
+	}
+
+	public long getBitboard(Color color, PieceType type) {
+		return Bitboards.pieces(board, color, type);
+	}
+
+	public long getOccupied() {
+		return board.getOccupied();
+	}
+
+	// Zobrist castling bits
+	public int getCastlingRights() {
+		return castlingRights;
+	}
+
 	public ChessPiece[][] getPieces() {
 		ChessPiece[][] chessPieces = new ChessPiece[board.getRows()][board.getColumns()];
 		for (int i = 0; i < board.getRows(); i++)
@@ -75,34 +344,96 @@ public class ChessMatch {
 	public boolean[][] possibleMovies(ChessPosition sourcePosition) {
 		Position position = sourcePosition.toPosition();
 		validateSourcePosition(position);
-		boolean[][] pm = board.piece(position).getPossibleMoves();
-		for (int i = 0; i < pm.length; i++) {
-			for (int j = 0; j < pm[i].length; j++) {
-				if (pm[i][j]) {
+		return board.piece(position).getPossibleMoves();
+	}
 
-				}
+	public ChessPiece performChessMove(ChessPosition sourcePosition, ChessPosition targetPosition) {
+		return performChessMove(sourcePosition, targetPosition, null);
+	}
+
+	// performs a packed move, as returned by generateMoves or the engine, the
+	// flags may be left out
+	public ChessPiece performChessMove(int move) {
+		if (checkMate)
+			throw new ChessException("The game is over");
+		int[] moves = new int[MAX_MOVES];
+		int count = generateMoves(moves);
+		for (int i = 0; i < count; i++) {
+			if (Move.withoutFlags(moves[i]) == Move.withoutFlags(move)) {
+				PieceType promotion = Move.promotion(move);
+				return performChessMove(ChessPosition.fromSquare(Move.source(move)),
+						ChessPosition.fromSquare(Move.target(move)),
+						promotion == null ? null : String.valueOf(promotion.getLetter()));
 			}
 		}
-		return pm;
+		throw new ChessException("Illegal move " + Move.toString(move));
 	}
 
-	public ChessPiece performChessMove(ChessPosition sourcePosition, ChessPosition targetPosition) {
-		Position source = sourcePosition.toPosition();
-		Position target = targetPosition.toPosition();
-		validateSourcePosition(source);
-		validateTargetPosition(source, target);
+	// the move from source to target with the flags generateMoves would give it
+	private int packMove(int source, int target, PieceType promotion) {
+		ChessPiece piece = (ChessPiece) board.pieceAt(source);
+		int flags = board.isOccupied(target) ? Move.CAPTURE : 0;
+		if (piece instanceof King && Math.abs(target - source) == 2)
+			flags = Move.CASTLING;
+		else if (piece instanceof Pawn && Math.abs(target - source) == 2 * board.getColumns())
+			flags = Move.DOUBLE_PUSH;
+		else if (piece instanceof Pawn && flags == 0 && column(source) != column(target))
+			flags = Move.EN_PASSANT;
+		return promotion == null ? Move.of(source, target, flags) : Move.of(source, target, promotion, flags);
+	}
+
+	// true when moving from source to target promotes a pawn, so the request
+	// must carry the promotion piece
+	public boolean isPromotion(ChessPosition sourcePosition, ChessPosition targetPosition) {
+		Position sourcePos = sourcePosition.toPosition();
+		Position targetPos = targetPosition.toPosition();
+		return board.piece(sourcePos) instanceof Pawn && (targetPos.getRow() == 0 || targetPos.getRow() == 7);
+	}
+
+	// promotionType is one of B, N, R or Q and is required when a pawn promotes
+	public ChessPiece performChessMove(ChessPosition sourcePosition, ChessPosition targetPosition,
+			String promotionType) {
+		if (!EngineMetrics.ENABLED)
+			return performMove(sourcePosition, targetPosition, promotionType);
+		long start = System.nanoTime();
+		try {
+			return performMove(sourcePosition, targetPosition, promotionType);
+		} finally {
+			EngineMetrics.PERFORM_CHESS_MOVE.recordSince(start);
+		}
+	}
+
+	private ChessPiece performMove(ChessPosition sourcePosition, ChessPosition targetPosition, String promotionType) {
+		// the winner stays the current player and could take the king
+		if (checkMate)
+			throw new ChessException("The game is over");
+		Position sourcePos = sourcePosition.toPosition();
+		Position targetPos = targetPosition.toPosition();
+		validateSourcePosition(sourcePos);
+		validateTargetPosition(sourcePos, targetPos);
+		PieceType promotion = null;
+		if (isPromotion(sourcePosition, targetPosition)) {
+			if (promotionType == null)
+				throw new ChessException("Choose the piece for promotion (B/N/R/Q)");
+			promotion = promotionType(promotionType);
+			if (promotion == null)
+				throw new ChessException("Invalid type for promotion");
+		}
+		int source = board.square(sourcePos);
+		int target = board.square(targetPos);
+		int move = packMove(source, target, promotion);
 		Piece capturedPiece = makeMove(source, target);
-		ChessPiece movedPiece = (ChessPiece) board.piece(target);
+		ChessPiece movedPiece = (ChessPiece) board.pieceAt(target);
+		Pawn promotedPawn = null;
 
 		// #specialmove promotion
 		if (movedPiece instanceof Pawn pawn) {
-			if (target.getRow() == 0 || target.getRow() == 7) {
-				ChessPiece pawnBackup = pawn.clone();
-				String type = Program.chosePieceType(); // I don´t like it
-				movedPiece = replacePromotedPiece(movedPiece, type);
+			if (promotion != null) {
+				promotedPawn = pawn;
+				movedPiece = replacePromotedPiece(movedPiece, promotion);
 				if (testCheck(currentPlayer)) {
+					restorePromotedPawn(movedPiece, pawn);
 					undoMove(source, target, capturedPiece);
-					movedPiece = pawnBackup;
 					throw new ChessException("You can't put yourself in check");
 				}
 			}
@@ -116,13 +447,96 @@ public class ChessMatch {
 				throw new ChessException("You can't put yourself in check");
 		}
 
-		// #specialmove en passant
-		if (movedPiece instanceof Pawn
-				&& (source.getRow() - 2 == target.getRow() || source.getRow() + 2 == target.getRow())) {
-			this.enPassantVulnerable = movedPiece;
-		} else {
-			this.enPassantVulnerable = null;
+		finishMove(move, capturedPiece, movedPiece, promotedPawn);
+		// a new move drops the ones that were taken back
+		redoSize = historySize;
+		return (ChessPiece) capturedPiece;
+	}
+
+	// true when takeBack has a move to take back
+	public boolean canTakeBack() {
+		return historySize > firstUndoable;
+	}
+
+	// true when redo has a move to play again
+	public boolean canRedo() {
+		return historySize < redoSize;
+	}
+
+	/*
+	 * Takes back the last performed move, checkmate included, in constant
+	 * time from its undo record, and returns it. The move stays in the
+	 * history for redo until another one is performed.
+	 */
+	public int takeBack() {
+		if (!canTakeBack())
+			throw new ChessException("There is no move to take back");
+		int move = history[--historySize];
+		int source = Move.source(move);
+		int target = Move.target(move);
+		// a finished match didn't pass the turn
+		if (checkMate)
+			checkMate = false;
+		else
+			previousTurn();
+		check = (historyUndo[historySize] & 1) != 0;
+		halfmoveClock = historyUndo[historySize] >>> 1;
+		enPassantVulnerable = historyEnPassant[historySize];
+
+		Piece capturedPiece = Move.hasFlag(move, Move.CAPTURE) || Move.hasFlag(move, Move.EN_PASSANT)
+				? capturedPieces.get(capturedPieces.size() - 1)
+				: null;
+		// #specialmove promotion
+		if (historyPromotions[historySize] != null)
+			restorePromotedPawn((ChessPiece) board.pieceAt(target), historyPromotions[historySize]);
+		undoMove(source, target, capturedPiece);
+		updateEnPassantKey();
+		checkPositionKey();
+		historyEnPassant[historySize] = null;
+		historyPromotions[historySize] = null;
+		snapshot = takeSnapshot();
+		return move;
+	}
+
+	// plays again the last move taken back, in constant time, and returns it
+	public int redo() {
+		if (!canRedo())
+			throw new ChessException("There is no move to redo");
+		int move = history[historySize];
+		int target = Move.target(move);
+		Piece capturedPiece = makeMove(Move.source(move), target);
+		ChessPiece movedPiece = (ChessPiece) board.pieceAt(target);
+		Pawn pawn = null;
+		// #specialmove promotion
+		if (Move.isPromotion(move)) {
+			pawn = (Pawn) movedPiece;
+			movedPiece = replacePromotedPiece(movedPiece, Move.promotion(move));
+		}
+		finishMove(move, capturedPiece, movedPiece, pawn);
+		return move;
+	}
+
+	// everything a legal move changes after the pieces moved, with its undo record
+	private void finishMove(int move, Piece capturedPiece, ChessPiece movedPiece, Pawn promotedPawn) {
+		if (historySize == history.length) {
+			history = Arrays.copyOf(history, historySize * 2);
+			historyUndo = Arrays.copyOf(historyUndo, historySize * 2);
+			historyEnPassant = Arrays.copyOf(historyEnPassant, historySize * 2);
+			historyPromotions = Arrays.copyOf(historyPromotions, historySize * 2);
+			historyKeys = Arrays.copyOf(historyKeys, historySize * 2);
 		}
+		historyUndo[historySize] = halfmoveClock << 1 | (check ? 1 : 0);
+		historyEnPassant[historySize] = enPassantVulnerable;
+		historyPromotions[historySize] = promotedPawn;
+		history[historySize++] = move;
+
+		// #specialmove en passant
+		setEnPassantVulnerable(Move.hasFlag(move, Move.DOUBLE_PUSH) ? movedPiece : null);
+
+		if (capturedPiece != null || movedPiece instanceof Pawn || promotedPawn != null)
+			halfmoveClock = 0;
+		else
+			halfmoveClock++;
 
 		this.check = testCheck(opponent(currentPlayer));
 
@@ -132,102 +546,342 @@ public class ChessMatch {
 		if (!this.checkMate) {
 			nextTurn();
 		}
-		return (ChessPiece) capturedPiece;
+		checkPositionKey();
+		historyKeys[historySize - 1] = positionKey;
+		snapshot = takeSnapshot();
+	}
+
+	// keys of the positions since the last capture or pawn move, oldest first
+	// and without the current one, the only ones the current can repeat
+	public long[] getRepetitionKeys() {
+		int count = Math.min(halfmoveClock, historySize);
+		long[] keys = new long[count];
+		for (int i = 0; i < count; i++) {
+			int move = historySize - count + i;
+			keys[i] = move == 0 ? initialPositionKey : historyKeys[move - 1];
+		}
+		return keys;
 	}
 
 	public ChessPiece replacePromotedPiece(ChessPiece piece, String type) {
-		type = type.toUpperCase();
-		ChessPiece newPiece = switch (type) {
-			case "B" -> new Bishop(board, this, piece.getColor());
-			case "N" -> new Knight(board, this, piece.getColor());
-			case "Q" -> new Queen(board, this, piece.getColor());
-			case "R" -> new Rook(board, this, piece.getColor());
-			default -> throw new IllegalArgumentException("Invalid type for promotion");
+		PieceType newType = promotionType(type);
+		if (newType == null)
+			throw new IllegalArgumentException("Invalid type for promotion");
+		ChessPiece newPiece = replacePromotedPiece(piece, newType);
+		if (historySize > 0)
+			historyKeys[historySize - 1] = positionKey;
+		snapshot = takeSnapshot();
+		return newPiece;
+	}
+
+	private static PieceType promotionType(String type) {
+		return switch (type.toUpperCase()) {
+			case "B" -> PieceType.BISHOP;
+			case "N" -> PieceType.KNIGHT;
+			case "Q" -> PieceType.QUEEN;
+			case "R" -> PieceType.ROOK;
+			default -> null;
 		};
-		Position pos = (Position) piece.getPosition().clone();
-		Piece p = board.removePiece(pos);
-		piecesOnTheBoard.remove(p);
-		board.placePiece(newPiece, pos);
-		piecesOnTheBoard.add(newPiece);
+	}
+
+	private ChessPiece replacePromotedPiece(ChessPiece piece, PieceType type) {
+		ChessPiece newPiece = newPiece(type, piece.getColor());
+		int square = piece.getSquare();
+		ChessPiece p = (ChessPiece) board.removePiece(square);
+		board.placePiece(newPiece, square);
+		positionKey ^= Zobrist.piece(p.getBitboardIndex(), square) ^ Zobrist.piece(newPiece.getBitboardIndex(), square);
+		updateAttacks(Bitboards.bit(square));
 
 		return newPiece;
 	}
 
-	private Piece makeMove(Position source, Position target) {
+	private void restorePromotedPawn(ChessPiece promotedPiece, Pawn pawn) {
+		int square = promotedPiece.getSquare();
+		board.removePiece(square);
+		board.placePiece(pawn, square);
+		positionKey ^= Zobrist.piece(promotedPiece.getBitboardIndex(), square)
+				^ Zobrist.piece(pawn.getBitboardIndex(), square);
+		updateAttacks(Bitboards.bit(square));
+	}
+
+	private ChessPiece newPiece(PieceType type, Color color) {
+		return switch (type) {
+			case PAWN -> new Pawn(board, this, color);
+			case KNIGHT -> new Knight(board, this, color);
+			case BISHOP -> new Bishop(board, this, color);
+			case ROOK -> new Rook(board, this, color);
+			case QUEEN -> new Queen(board, this, color);
+			case KING -> new King(board, this, color);
+		};
+	}
+
+	private ChessPiece copyPiece(ChessPiece piece) {
+		ChessPiece copy = newPiece(piece.getType(), piece.getColor());
+		copy.moveCount = piece.moveCount;
+		return copy;
+	}
+
+	private Piece makeMove(int source, int target) {
+		if (EngineMetrics.ENABLED)
+			EngineMetrics.MAKE_MOVE.increment();
 		ChessPiece piece = (ChessPiece) board.removePiece(source);
 		piece.increseMoveCount();
 		Piece capturedPiece = board.removePiece(target);
 		board.placePiece(piece, target);
+		long changed = Bitboards.bit(source) | Bitboards.bit(target);
+		int capturedSquare = target;
+		positionKey ^= Zobrist.piece(piece.getBitboardIndex(), source) ^ Zobrist.piece(piece.getBitboardIndex(), target);
 
 		// #specialmove castling
 		if (piece instanceof King) {
 			// kingside rook
-			if (target.getColumn() == source.getColumn() + 2) {
-				makeMove(new Position(source.getRow(), source.getColumn() + 3),
-						new Position(source.getRow(), source.getColumn() + 1));
+			if (target == source + 2) {
+				makeMove(source + 3, source + 1);
 			} else // queenside rook
-			if (target.getColumn() == source.getColumn() - 2) {
-				makeMove(new Position(source.getRow(), source.getColumn() - 4),
-						new Position(source.getRow(), source.getColumn() - 1));
+			if (target == source - 2) {
+				makeMove(source - 4, source - 1);
 			}
 		} else
 		// #specialmove en passant
-		if (piece instanceof Pawn && source.getColumn() != target.getColumn() && capturedPiece == null) {
-			if (piece.getColor() == Color.WHITE) {
-				capturedPiece = board
-						.removePiece(new Position(piece.getPosition().getRow() + 1, piece.getPosition().getColumn()));
-			} else {
-				capturedPiece = board
-						.removePiece(new Position(piece.getPosition().getRow() - 1, piece.getPosition().getColumn()));
-			}
+		if (piece instanceof Pawn && column(source) != column(target) && capturedPiece == null) {
+			capturedSquare = piece.getColor() == Color.WHITE ? target + board.getColumns()
+					: target - board.getColumns();
+			capturedPiece = board.removePiece(capturedSquare);
+			changed |= Bitboards.bit(capturedSquare);
 		}
 
 		if (capturedPiece != null) {
-			piecesOnTheBoard.remove(capturedPiece);
 			capturedPieces.add(capturedPiece);
+			positionKey ^= Zobrist.piece(capturedPiece.getBitboardIndex(), capturedSquare);
 		}
 
+		if ((changed & CASTLING_SQUARES) != 0)
+			updateCastlingRights();
+		updateAttacks(changed);
 		return capturedPiece;
 	}
 
-	private void undoMove(Position source, Position target, Piece capturedPiece) {
+	private void undoMove(int source, int target, Piece capturedPiece) {
+		if (EngineMetrics.ENABLED)
+			EngineMetrics.UNDO_MOVE.increment();
 		ChessPiece piece = (ChessPiece) board.removePiece(target);
 		piece.decreseMoveCount();
 		board.placePiece(piece, source);
+		long changed = Bitboards.bit(source) | Bitboards.bit(target);
+		positionKey ^= Zobrist.piece(piece.getBitboardIndex(), source) ^ Zobrist.piece(piece.getBitboardIndex(), target);
 
 		if (capturedPiece != null) {
 			board.placePiece(capturedPiece, target);
-			this.capturedPieces.remove(capturedPiece);
-			this.piecesOnTheBoard.add(capturedPiece);
+			// captures are undone in the reverse order they were made
+			this.capturedPieces.remove(this.capturedPieces.size() - 1);
+			positionKey ^= Zobrist.piece(capturedPiece.getBitboardIndex(), target);
 		}
 
 		// #specialmove castling
 		if (piece instanceof King) {
 			// kingside rook
-			if (target.getColumn() == source.getColumn() + 2) {
-				undoMove(new Position(source.getRow(), source.getColumn() + 3),
-						new Position(source.getRow(), source.getColumn() + 1), null);
+			if (target == source + 2) {
+				undoMove(source + 3, source + 1, null);
 			} else // queenside rook
-			if (target.getColumn() == source.getColumn() - 2) {
-				undoMove(new Position(source.getRow(), source.getColumn() - 4),
-						new Position(source.getRow(), source.getColumn() - 1), null);
+			if (target == source - 2) {
+				undoMove(source - 4, source - 1, null);
 			}
 		} else
 		// #specialmove en passant
-		if (piece instanceof Pawn pawn && source.getColumn() != target.getColumn()
+		if (piece instanceof Pawn pawn && column(source) != column(target)
 				&& capturedPiece == enPassantVulnerable) {
 			if ((pawn.getColor() == Color.WHITE && pawn.getPosition().getRow() == 3)
 					|| (pawn.getColor() == Color.BLACK && pawn.getPosition().getRow() == 4)) {
 				pawn = (Pawn) board.removePiece(target);
 
-				if (piece.getColor() == Color.WHITE) {
-					board.placePiece(pawn, new Position(3, target.getColumn()));
-				} else {
-					board.placePiece(pawn, new Position(4, target.getColumn()));
-				}
+				int capturedSquare = piece.getColor() == Color.WHITE ? target + board.getColumns()
+						: target - board.getColumns();
+				board.placePiece(pawn, capturedSquare);
+				changed |= Bitboards.bit(capturedSquare);
+				positionKey ^= Zobrist.piece(pawn.getBitboardIndex(), target)
+						^ Zobrist.piece(pawn.getBitboardIndex(), capturedSquare);
 			}
 		}
 
+		if ((changed & CASTLING_SQUARES) != 0)
+			updateCastlingRights();
+		updateAttacks(changed);
+	}
+
+	/*
+	 * Refreshes the attack maps after the pieces on the changed squares moved.
+	 * Pawn, knight and king attacks only depend on where the piece stands, so
+	 * besides the pieces on those squares only the sliders whose rays reached
+	 * one of them need to be recomputed.
+	 */
+	private void updateAttacks(long changed) {
+		long occupied = board.getOccupied();
+		long dirty = changed & occupied;
+		for (long sliders = sliders() & ~changed; sliders != 0; sliders &= sliders - 1) {
+			int square = Long.numberOfTrailingZeros(sliders);
+			if ((attacksFrom[square] & changed) != 0)
+				dirty |= Bitboards.bit(square);
+		}
+		for (long empty = changed & ~occupied; empty != 0; empty &= empty - 1)
+			attacksFrom[Long.numberOfTrailingZeros(empty)] = 0;
+		for (; dirty != 0; dirty &= dirty - 1) {
+			int square = Long.numberOfTrailingZeros(dirty);
+			attacksFrom[square] = ((ChessPiece) board.pieceAt(square)).getAttacks();
+		}
+
+		for (Color color : COLORS) {
+			long attacks = 0;
+			for (long pieces = Bitboards.occupancy(board, color); pieces != 0; pieces &= pieces - 1)
+				attacks |= attacksFrom[Long.numberOfTrailingZeros(pieces)];
+			attackedBy[color.ordinal()] = attacks;
+		}
+	}
+
+	private long sliders() {
+		long sliders = 0;
+		for (Color color : COLORS)
+			sliders |= Bitboards.pieces(board, color, PieceType.BISHOP) | Bitboards.pieces(board, color, PieceType.ROOK)
+					| Bitboards.pieces(board, color, PieceType.QUEEN);
+		return sliders;
+	}
+
+	public boolean isAttacked(int square, Color by) {
+		return Bitboards.contains(attackedBy[by.ordinal()], square);
+	}
+
+	public long getAttackedSquares(Color by) {
+		return attackedBy[by.ordinal()];
+	}
+
+	private int column(int square) {
+		return board.position(square).getColumn();
+	}
+
+	private void updateCastlingRights() {
+		int rights = castlingRights();
+		positionKey ^= Zobrist.castling(castlingRights) ^ Zobrist.castling(rights);
+		castlingRights = rights;
+	}
+
+	// derived from the move counts of the kings and rooks on their initial squares
+	private int castlingRights() {
+		int rights = 0;
+		if (unmoved(60, PieceType.KING, Color.WHITE)) {
+			if (unmoved(63, PieceType.ROOK, Color.WHITE))
+				rights |= Zobrist.WHITE_KINGSIDE;
+			if (unmoved(56, PieceType.ROOK, Color.WHITE))
+				rights |= Zobrist.WHITE_QUEENSIDE;
+		}
+		if (unmoved(4, PieceType.KING, Color.BLACK)) {
+			if (unmoved(7, PieceType.ROOK, Color.BLACK))
+				rights |= Zobrist.BLACK_KINGSIDE;
+			if (unmoved(0, PieceType.ROOK, Color.BLACK))
+				rights |= Zobrist.BLACK_QUEENSIDE;
+		}
+		return rights;
+	}
+
+	private boolean unmoved(int square, PieceType type, Color color) {
+		ChessPiece piece = (ChessPiece) board.pieceAt(square);
+		return piece != null && piece.getType() == type && piece.getColor() == color && piece.getMoveCount() == 0;
+	}
+
+	private void setEnPassantVulnerable(ChessPiece piece) {
+		enPassantVulnerable = piece;
+		updateEnPassantKey();
+	}
+
+	// the en passant file only counts when a pawn can actually take on it
+	private void updateEnPassantKey() {
+		long key = 0;
+		if (enPassantVulnerable != null) {
+			int square = enPassantVulnerable.getSquare();
+			long neighbours = (column(square) > 0 ? Bitboards.bit(square - 1) : 0)
+					| (column(square) < board.getColumns() - 1 ? Bitboards.bit(square + 1) : 0);
+			if ((Bitboards.pieces(board, opponent(enPassantVulnerable.getColor()), PieceType.PAWN) & neighbours) != 0)
+				key = Zobrist.enPassant(column(square));
+		}
+		positionKey ^= enPassantKey ^ key;
+		enPassantKey = key;
+	}
+
+	private void resetPositionKey() {
+		castlingRights = castlingRights();
+		positionKey = computePositionKey();
+		enPassantKey = 0;
+		updateEnPassantKey();
+	}
+
+	// full recomputation, without the en passant part
+	private long computePositionKey() {
+		long key = Zobrist.castling(castlingRights());
+		for (long pieces = board.getOccupied(); pieces != 0; pieces &= pieces - 1) {
+			int square = Long.numberOfTrailingZeros(pieces);
+			key ^= Zobrist.piece(board.pieceAt(square).getBitboardIndex(), square);
+		}
+		if (currentPlayer == Color.BLACK)
+			key ^= Zobrist.blackToMove();
+		return key;
+	}
+
+	private void checkPositionKey() {
+		if (DEBUG_POSITION_KEY && positionKey != (computePositionKey() ^ enPassantKey))
+			throw new IllegalStateException("Position key out of sync with the board");
+	}
+
+	// plays a legal move like performChessMove does, but without any validation,
+	// for searches that walk the move tree with generateMoves
+	public void playMove(int move) {
+		if (ply == playedMoves.length) {
+			playedMoves = Arrays.copyOf(playedMoves, ply * 2);
+			playedCaptures = Arrays.copyOf(playedCaptures, ply * 2);
+			previousEnPassantVulnerable = Arrays.copyOf(previousEnPassantVulnerable, ply * 2);
+			previousCheck = Arrays.copyOf(previousCheck, ply * 2);
+			promotedPawns = Arrays.copyOf(promotedPawns, ply * 2);
+			previousHalfmoveClock = Arrays.copyOf(previousHalfmoveClock, ply * 2);
+		}
+		int target = Move.target(move);
+		previousEnPassantVulnerable[ply] = enPassantVulnerable;
+		previousCheck[ply] = check;
+		previousHalfmoveClock[ply] = halfmoveClock;
+		if (board.pieceAt(Move.source(move)) instanceof Pawn || board.isOccupied(target))
+			halfmoveClock = 0;
+		else
+			halfmoveClock++;
+		playedCaptures[ply] = makeMove(Move.source(move), target);
+		promotedPawns[ply] = null;
+
+		ChessPiece movedPiece = (ChessPiece) board.pieceAt(target);
+		// #specialmove promotion
+		if (Move.isPromotion(move)) {
+			promotedPawns[ply] = (Pawn) movedPiece;
+			movedPiece = replacePromotedPiece(movedPiece, Move.promotion(move));
+		}
+		// #specialmove en passant
+		setEnPassantVulnerable(Move.hasFlag(move, Move.DOUBLE_PUSH) ? movedPiece : null);
+
+		playedMoves[ply++] = move;
+		nextTurn();
+		check = testCheck(currentPlayer);
+		checkPositionKey();
+	}
+
+	// takes back the last move given to playMove
+	public void undoPlayedMove() {
+		int move = playedMoves[--ply];
+		previousTurn();
+		check = previousCheck[ply];
+		halfmoveClock = previousHalfmoveClock[ply];
+		enPassantVulnerable = previousEnPassantVulnerable[ply];
+		if (promotedPawns[ply] != null)
+			restorePromotedPawn((ChessPiece) board.pieceAt(Move.target(move)), promotedPawns[ply]);
+		undoMove(Move.source(move), Move.target(move), playedCaptures[ply]);
+		updateEnPassantKey();
+		checkPositionKey();
+
+		playedCaptures[ply] = null;
+		previousEnPassantVulnerable[ply] = null;
+		promotedPawns[ply] = null;
 	}
 
 	private void validateSourcePosition(Position source) {
@@ -247,6 +901,13 @@ public class ChessMatch {
 	private void nextTurn() {
 		this.turn++;
 		this.currentPlayer = this.currentPlayer == Color.WHITE ? Color.BLACK : Color.WHITE;
+		this.positionKey ^= Zobrist.blackToMove();
+	}
+
+	private void previousTurn() {
+		this.turn--;
+		this.currentPlayer = this.currentPlayer == Color.WHITE ? Color.BLACK : Color.WHITE;
+		this.positionKey ^= Zobrist.blackToMove();
 	}
 
 	public Color opponent(Color color) {
@@ -254,31 +915,134 @@ public class ChessMatch {
 	}
 
 	private King king(Color color) {
-		for (Piece piece : this.piecesOnTheBoard) {
-			if (((ChessPiece) piece).getColor() == color && piece instanceof King king) {
-				return king;
-			}
-		}
-		throw new IllegalStateException(
-				"There is no " + UI.getUIColor(color, UI.FontType.PLAIN) + color + UI.RESET + " king on the board");
+		King king = kings[color.ordinal()];
+		if (king == null)
+			throw new IllegalStateException("There is no " + color + " king on the board");
+		return king;
 	}
 
 	public void validadePossibleMoves(boolean[][] pm, Position source) {
+		long legal = getLegalTargets((ChessPiece) board.piece(source));
 		for (int i = 0; i < pm.length; i++) {
 			for (int j = 0; j < pm[i].length; j++) {
-				if (pm[i][j]) {
-					if (thisMovePutCurrentPlayerInCheck(source, new Position(i, j)))
-						pm[i][j] = false;
-				}
+				if (pm[i][j] && !Bitboards.contains(legal, board.square(i, j)))
+					pm[i][j] = false;
 			}
 		}
 	}
 
-	private boolean thisMovePutCurrentPlayerInCheck(Position source, Position target) {
-		Piece capturedPiece = makeMove(source, target);
-		boolean check = testCheck(currentPlayer);
-		undoMove(source, target, capturedPiece);
-		return check;
+	// pseudo-legal targets of the piece that don't leave its king in check
+	public long getLegalTargets(ChessPiece piece) {
+		Color color = piece.getColor();
+		return legalTargets(piece, checkers(color), pinned(color));
+	}
+
+	// writes the legal moves of the current player from moves[0] on and returns
+	// how many there are, the array must hold at least MAX_MOVES entries
+	public int generateMoves(int[] moves) {
+		// a finished match has no moves
+		if (checkMate)
+			return 0;
+		long checkers = checkers(currentPlayer);
+		long pinned = pinned(currentPlayer);
+		int count = 0;
+		for (long pieces = Bitboards.occupancy(board, currentPlayer); pieces != 0; pieces &= pieces - 1) {
+			ChessPiece piece = (ChessPiece) board.pieceAt(Long.numberOfTrailingZeros(pieces));
+			if (EngineMetrics.ENABLED) {
+				long start = System.nanoTime();
+				count = piece.generateMoves(moves, count, legalTargets(piece, checkers, pinned));
+				EngineMetrics.generateMoves(piece.getType()).recordSince(start);
+			} else {
+				count = piece.generateMoves(moves, count, legalTargets(piece, checkers, pinned));
+			}
+		}
+		return count;
+	}
+
+	/*
+	 * Keeps the legal targets out of the pseudo-legal ones without playing them.
+	 * The king can't step onto an attacked square, in double check only the king
+	 * moves, in single check the other pieces must capture the checker or block
+	 * it, and a pinned piece stays on the line through its king and the pinner.
+	 * En passant removes two pieces from the same row, so it is checked against
+	 * the occupancy it leaves behind.
+	 */
+	private long legalTargets(ChessPiece piece, long checkers, long pinned) {
+		Color color = piece.getColor();
+		Color opponent = opponent(color);
+		int source = piece.getSquare();
+		long occupied = board.getOccupied();
+		long targets = piece.getPossibleTargets();
+
+		if (piece instanceof King) {
+			// the king doesn't block the rays of the sliders checking it
+			occupied ^= Bitboards.bit(source);
+			for (long t = targets; t != 0; t &= t - 1) {
+				int target = Long.numberOfTrailingZeros(t);
+				if (attackers(target, occupied, opponent) != 0)
+					targets &= ~Bitboards.bit(target);
+			}
+			return targets;
+		}
+		if (Long.bitCount(checkers) > 1)
+			return 0;
+
+		int king = kingSquare(color);
+		long mask = ~0L;
+		if (checkers != 0)
+			mask = checkers | Bitboards.between(king, Long.numberOfTrailingZeros(checkers));
+		if (Bitboards.contains(pinned, source))
+			mask &= Bitboards.line(king, source);
+
+		// #specialmove en passant
+		if (piece instanceof Pawn) {
+			long enPassant = targets & Bitboards.pawnAttacks(color, source) & ~occupied;
+			if (enPassant != 0) {
+				targets &= ~enPassant;
+				long captured = Bitboards.bit(enPassantVulnerable.getSquare());
+				occupied ^= Bitboards.bit(source) | captured | enPassant;
+				if ((attackers(king, occupied, opponent) & ~captured) == 0)
+					return (targets & mask) | enPassant;
+			}
+		}
+		return targets & mask;
+	}
+
+	// opponent pieces giving check to the king of the color
+	private long checkers(Color color) {
+		return attackers(kingSquare(color), board.getOccupied(), opponent(color));
+	}
+
+	// pieces of the color that are the only blocker between their king and an
+	// opponent slider
+	private long pinned(Color color) {
+		Color opponent = opponent(color);
+		int king = kingSquare(color);
+		long occupied = board.getOccupied();
+		long queens = Bitboards.pieces(board, opponent, PieceType.QUEEN);
+		long snipers = (Bitboards.rookAttacks(king, 0) & (Bitboards.pieces(board, opponent, PieceType.ROOK) | queens))
+				| (Bitboards.bishopAttacks(king, 0) & (Bitboards.pieces(board, opponent, PieceType.BISHOP) | queens));
+		long pinned = 0;
+		for (; snipers != 0; snipers &= snipers - 1) {
+			long blockers = Bitboards.between(king, Long.numberOfTrailingZeros(snipers)) & occupied;
+			if (Long.bitCount(blockers) == 1)
+				pinned |= blockers;
+		}
+		return pinned & Bitboards.occupancy(board, color);
+	}
+
+	// pieces of the color attacking the square with the given occupancy
+	private long attackers(int square, long occupied, Color by) {
+		long queens = Bitboards.pieces(board, by, PieceType.QUEEN);
+		return (Bitboards.pawnAttacks(opponent(by), square) & Bitboards.pieces(board, by, PieceType.PAWN))
+				| (Bitboards.knightAttacks(square) & Bitboards.pieces(board, by, PieceType.KNIGHT))
+				| (Bitboards.kingAttacks(square) & Bitboards.pieces(board, by, PieceType.KING))
+				| (Bitboards.bishopAttacks(square, occupied) & (Bitboards.pieces(board, by, PieceType.BISHOP) | queens))
+				| (Bitboards.rookAttacks(square, occupied) & (Bitboards.pieces(board, by, PieceType.ROOK) | queens));
+	}
+
+	private int kingSquare(Color color) {
+		return king(color).getSquare();
 	}
 
 	public boolean testCheck(Color color) {
@@ -286,43 +1050,280 @@ public class ChessMatch {
 	}
 
 	public boolean testCheck(King king) {
-		Position kingPosition = king.getPosition();
-		List<Piece> opponentPieces = piecesOnTheBoard.stream()
-				.filter(p -> ((ChessPiece) p).getColor() != king.getColor()).collect(Collectors.toList());
-		for (Piece opponentPiece : opponentPieces) {
-			if (opponentPiece.getAllPossibleMoves()[kingPosition.getRow()][kingPosition.getColumn()]) {
-				return true;
-			}
+		if (!EngineMetrics.ENABLED)
+			return isAttacked(king.getSquare(), opponent(king.getColor()));
+		long start = System.nanoTime();
+		boolean attacked = isAttacked(king.getSquare(), opponent(king.getColor()));
+		EngineMetrics.TEST_CHECK.recordSince(start);
+		return attacked;
+	}
+
+	public boolean testCheckMate(Color color) {
+		if (!EngineMetrics.ENABLED)
+			return hasNoLegalMove(color);
+		long start = System.nanoTime();
+		boolean checkMate = hasNoLegalMove(color);
+		EngineMetrics.TEST_CHECK_MATE.recordSince(start);
+		return checkMate;
+	}
+
+	// true when no piece of the color has a legal move
+	private boolean hasNoLegalMove(Color color) {
+		long checkers = checkers(color);
+		long pinned = pinned(color);
+		for (long pieces = Bitboards.occupancy(board, color); pieces != 0; pieces &= pieces - 1) {
+			ChessPiece p = (ChessPiece) board.pieceAt(Long.numberOfTrailingZeros(pieces));
+			if (legalTargets(p, checkers, pinned) != 0)
+				return false;
+		}
+		return true;
+	}
+
+	// number of leaf nodes of the legal move tree, the standard movegen check
+	public long perft(int depth) {
+		return depth == 0 ? 1 : perft(depth, new int[depth][MAX_MOVES]);
+	}
+
+	public long perft(int depth, ForkJoinPool pool) {
+		long nodes = 0;
+		for (long n : divide(depth, pool).values())
+			nodes += n;
+		return depth == 0 ? 1 : nodes;
+	}
+
+	private long perft(int depth, int[][] buffers) {
+		int[] moves = buffers[depth - 1];
+		int count = generateMoves(moves);
+		// bulk counting, the leaves are not played
+		if (depth == 1)
+			return count;
+
+		long nodes = 0;
+		for (int i = 0; i < count; i++) {
+			playMove(moves[i]);
+			nodes += perft(depth - 1, buffers);
+			undoPlayedMove();
+		}
+		return nodes;
+	}
+
+	// perft of each root move, keyed like "e2e4" or "e7e8q"
+	public Map<String, Long> divide(int depth) {
+		Map<String, Long> result = new LinkedHashMap<>();
+		if (depth < 1)
+			return result;
+		int[] moves = new int[MAX_MOVES];
+		int[][] buffers = new int[depth][MAX_MOVES];
+		int count = generateMoves(moves);
+		for (int i = 0; i < count; i++) {
+			playMove(moves[i]);
+			result.put(Move.toString(moves[i]), depth == 1 ? 1 : perft(depth - 1, buffers));
+			undoPlayedMove();
+		}
+		return result;
+	}
+
+	// root moves are searched on copies of this match by the pool workers
+	public Map<String, Long> divide(int depth, ForkJoinPool pool) {
+		Map<String, RecursiveTask<Long>> tasks = new LinkedHashMap<>();
+		if (depth < 1)
+			return new LinkedHashMap<>();
+		int[] moves = new int[MAX_MOVES];
+		int count = generateMoves(moves);
+		for (int i = 0; i < count; i++) {
+			int move = moves[i];
+			tasks.put(Move.toString(move), new RecursiveTask<Long>() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected Long compute() {
+					ChessMatch copy = new ChessMatch(ChessMatch.this);
+					copy.playMove(move);
+					return depth == 1 ? 1 : copy.perft(depth - 1, new int[depth - 1][MAX_MOVES]);
+				}
+			});
+		}
+		tasks.values().forEach(pool::execute);
+		Map<String, Long> result = new LinkedHashMap<>();
+		tasks.forEach((move, task) -> result.put(move, task.join()));
+		return result;
+	}
+
+	// fixed depth score of every legal move, best first and keyed like "e2e4"
+	public Map<String, Integer> analyze(int depth) {
+		return analyze(depth, ForkJoinPool.commonPool());
+	}
+
+	// each root move is scored on its own copy of the match by a pool worker,
+	// the workers share one transposition table
+	public Map<String, Integer> analyze(int depth, ForkJoinPool pool) {
+		// a finished match has no moves to score
+		if (checkMate)
+			return new LinkedHashMap<>();
+		TranspositionTable table = new TranspositionTable(ANALYSIS_TABLE_MEGABYTES);
+		// engines are reused by the tasks that run one after the other
+		Queue<Engine> engines = new ConcurrentLinkedQueue<>();
+		int[] moves = new int[MAX_MOVES];
+		int count = generateMoves(moves);
+
+		List<RecursiveTask<Integer>> tasks = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			int move = moves[i];
+			tasks.add(new RecursiveTask<Integer>() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected Integer compute() {
+					Engine engine = engines.poll();
+					if (engine == null)
+						engine = new Engine(table);
+					int score = engine.scoreMove(ChessMatch.this, move, Math.max(depth, 1));
+					engines.add(engine);
+					return score;
+				}
+			});
+		}
+		tasks.forEach(pool::execute);
+
+		Integer[] order = new Integer[count];
+		int[] scores = new int[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = i;
+			scores[i] = tasks.get(i).join();
 		}
-		return false;
-	}
-
-	private boolean testCheckMate(Color color) {
-		List<Piece> pieces = piecesOnTheBoard.stream().filter(p -> ((ChessPiece) p).getColor() == color)
-				.collect(Collectors.toList());
-		for (Piece p : pieces) {
-			boolean[][] mat = p.getPossibleMoves();
-			for (int i = 0; i < board.getRows(); i++) {
-				for (int j = 0; j < board.getColumns(); j++) {
-					if (mat[i][j]) {
-						Position source = (Position) p.getPosition().clone();
-						Position target = new Position(i, j);
-
-						Piece capturedPiece = makeMove(source, target);
-						boolean remainsInCheck = testCheck(color);
-						undoMove(source, target, capturedPiece);
-						if (!remainsInCheck)
-							return false;
-					}
+		Arrays.sort(order, (a, b) -> Integer.compare(scores[b], scores[a]));
+		Map<String, Integer> result = new LinkedHashMap<>();
+		for (int i : order)
+			result.put(Move.toString(moves[i]), scores[i]);
+		return result;
+	}
+
+	public String toFen() {
+		return appendFen(new StringBuilder(90)).toString();
+	}
+
+	// writes the position in Forsyth-Edwards Notation to sb, straight from the
+	// board so it allocates nothing
+	public StringBuilder appendFen(StringBuilder sb) {
+		for (int row = 0; row < 8; row++) {
+			if (row > 0)
+				sb.append('/');
+			int empty = 0;
+			for (int column = 0; column < 8; column++) {
+				ChessPiece piece = (ChessPiece) board.pieceAt(row * 8 + column);
+				if (piece == null) {
+					empty++;
+					continue;
 				}
+				if (empty > 0)
+					sb.append(empty);
+				empty = 0;
+				char letter = piece.getType().getLetter();
+				sb.append(piece.getColor() == Color.WHITE ? Character.toUpperCase(letter) : letter);
 			}
+			if (empty > 0)
+				sb.append(empty);
 		}
-		return true;
+		return PositionSnapshot.appendState(sb, sideToMove(), castlingRights, enPassantSquare(), halfmoveClock,
+				fullmoveNumber());
+	}
+
+	private PositionSnapshot takeSnapshot() {
+		byte[] squares = new byte[Bitboards.SQUARES];
+		for (long occupied = board.getOccupied(); occupied != 0; occupied &= occupied - 1) {
+			int square = Long.numberOfTrailingZeros(occupied);
+			squares[square] = (byte) (((ChessPiece) board.pieceAt(square)).getBitboardIndex() + 1);
+		}
+		return new PositionSnapshot(squares, sideToMove(), castlingRights, enPassantSquare(), halfmoveClock,
+				fullmoveNumber(), check, checkMate, positionKey,
+				historySize == 0 ? Move.NONE : history[historySize - 1]);
+	}
+
+	// the winner of a finished match is kept as the current player
+	private Color sideToMove() {
+		return checkMate ? opponent(currentPlayer) : currentPlayer;
+	}
+
+	private int fullmoveNumber() {
+		int plies = checkMate ? turn + 1 : turn;
+		return (plies + 1) / 2;
+	}
+
+	// #specialmove en passant: the square the vulnerable pawn skipped, -1 for none
+	private int enPassantSquare() {
+		return enPassantVulnerable == null ? -1
+				: enPassantVulnerable.getSquare()
+						+ (enPassantVulnerable.getColor() == Color.WHITE ? board.getColumns() : -board.getColumns());
+	}
+
+	// kings and rooks that keep a castling right and pawns on their initial
+	// row have not moved, everything else has
+	private void setMoveCounts(int rights) {
+		for (long pieces = board.getOccupied(); pieces != 0; pieces &= pieces - 1) {
+			int square = Long.numberOfTrailingZeros(pieces);
+			ChessPiece piece = (ChessPiece) board.pieceAt(square);
+			boolean white = piece.getColor() == Color.WHITE;
+			boolean unmoved = switch (piece.getType()) {
+				case PAWN -> square >>> 3 == (white ? 6 : 1);
+				case KING -> square == (white ? 60 : 4) && (rights & (white
+						? Zobrist.WHITE_KINGSIDE | Zobrist.WHITE_QUEENSIDE
+						: Zobrist.BLACK_KINGSIDE | Zobrist.BLACK_QUEENSIDE)) != 0;
+				case ROOK -> (square == 63 && white && (rights & Zobrist.WHITE_KINGSIDE) != 0)
+						|| (square == 56 && white && (rights & Zobrist.WHITE_QUEENSIDE) != 0)
+						|| (square == 7 && !white && (rights & Zobrist.BLACK_KINGSIDE) != 0)
+						|| (square == 0 && !white && (rights & Zobrist.BLACK_QUEENSIDE) != 0);
+				default -> true;
+			};
+			piece.moveCount = unmoved ? 0 : 1;
+		}
+	}
+
+	private PieceType fenType(char letter, CharSequence fen) {
+		return switch (Character.toLowerCase(letter)) {
+			case 'p' -> PieceType.PAWN;
+			case 'n' -> PieceType.KNIGHT;
+			case 'b' -> PieceType.BISHOP;
+			case 'r' -> PieceType.ROOK;
+			case 'q' -> PieceType.QUEEN;
+			case 'k' -> PieceType.KING;
+			default -> throw invalidFen(fen, "piece placement");
+		};
+	}
+
+	private static int skipSpaces(CharSequence fen, int i) {
+		while (i < fen.length() && fen.charAt(i) == ' ')
+			i++;
+		return i;
+	}
+
+	private static int skipDigits(CharSequence fen, int i) {
+		while (i < fen.length() && fen.charAt(i) >= '0' && fen.charAt(i) <= '9')
+			i++;
+		return i;
+	}
+
+	private static int fenNumber(CharSequence fen, int i) {
+		int end = skipDigits(fen, i);
+		if (end == i || end - i > 6)
+			throw invalidFen(fen, "move counters");
+		int number = 0;
+		for (; i < end; i++)
+			number = number * 10 + fen.charAt(i) - '0';
+		return number;
+	}
+
+	private static ChessException invalidFen(CharSequence fen, String part) {
+		return new ChessException("Invalid FEN, bad " + part + ": " + fen);
 	}
 
 	private void placeNewPiece(char column, int row, ChessPiece piece) {
-		board.placePiece(piece, new ChessPosition(column, row).toPosition());
-		piecesOnTheBoard.add(piece);
+		placePiece(piece, board.square(new ChessPosition(column, row).toPosition()));
+	}
+
+	private void placePiece(ChessPiece piece, int square) {
+		board.placePiece(piece, square);
+		if (piece instanceof King king)
+			kings[king.getColor().ordinal()] = king;
 	}
 
 	private void initialSetup() {
@@ -33,6 +33,60 @@ public abstract class ChessPiece extends Piece {
 		return ChessPosition.fromPosition(position);
 	}
 
+	public abstract PieceType getType();
+
+	@Override
+	public int getBitboardIndex() {
+		return Bitboards.index(color, getType());
+	}
+
+	public int getSquare() {
+		return getBoard().square(position);
+	}
+
+	// squares this piece attacks, whatever is standing on them
+	public abstract long getAttacks();
+
+	// hook method
+	public long getPossibleTargets() {
+		return getAttacks() & ~Bitboards.occupancy(getBoard(), color);
+	}
+
+	@Override
+	public boolean[][] getAllPossibleMoves() {
+		return Bitboards.toMatrix(getPossibleTargets());
+	}
+
+	@Override
+	public boolean[][] getPossibleMoves() {
+		return Bitboards.toMatrix(chessMatch.getLegalTargets(this));
+	}
+
+	@Override
+	public boolean isThereAnyPossibleMove() {
+		return chessMatch.getLegalTargets(this) != 0;
+	}
+
+	// writes the pseudo-legal moves from moves[count] on and returns the new count
+	public int generateMoves(int[] moves, int count) {
+		return generateMoves(moves, count, getPossibleTargets());
+	}
+
+	// same, restricted to the given targets
+	public int generateMoves(int[] moves, int count, long targets) {
+		int source = getSquare();
+		for (; targets != 0; targets &= targets - 1) {
+			int target = Long.numberOfTrailingZeros(targets);
+			moves[count++] = Move.of(source, target, getBoard().isOccupied(target) ? Move.CAPTURE : 0);
+		}
+		return count;
+	}
+
+	@Override
+	public boolean possibleMove(Position position) {
+		return Bitboards.contains(getPossibleTargets(), getBoard().square(position));
+	}
+
 	protected boolean isThereOpponentPiece(Position position) {
 		ChessPiece p = (ChessPiece) getBoard().piece(position);
 		return p != null && !p.getColor().equals(color);
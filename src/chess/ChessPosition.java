@@ -30,6 +30,11 @@ public class ChessPosition {
 	protected static ChessPosition fromPosition(Position position) {
 		return new ChessPosition((char) (position.getColumn() + 'a'), 8 - position.getRow());
 	}
+
+	// square index as used by bitboards and packed moves
+	public static ChessPosition fromSquare(int square) {
+		return new ChessPosition((char) ((square & 7) + 'a'), 8 - (square >>> 3));
+	}
 	
 	@Override
 	protected Object clone() throws CloneNotSupportedException {
@@ -0,0 +1,94 @@
+package chess;
+
+/*
+ * Moves packed into an int. The low 16 bits hold the source square (bits
+ * 0-5), the target square (bits 6-11) and the promotion piece type ordinal
+ * (bits 12-14, zero when there is no promotion). The flags live above them.
+ * Squares follow Board.square(row, column).
+ */
+public final class Move {
+	public static final int NONE = 0;
+
+	public static final int CAPTURE = 1 << 16;
+	public static final int DOUBLE_PUSH = 1 << 17;
+	public static final int EN_PASSANT = 1 << 18;
+	public static final int CASTLING = 1 << 19;
+
+	private static final PieceType[] TYPES = PieceType.values();
+
+	private Move() {
+	}
+
+	public static int of(int source, int target, int flags) {
+		return source | target << 6 | flags;
+	}
+
+	public static int of(int source, int target, PieceType promotion, int flags) {
+		return source | target << 6 | promotion.ordinal() << 12 | flags;
+	}
+
+	public static int source(int move) {
+		return move & 0x3F;
+	}
+
+	public static int target(int move) {
+		return move >>> 6 & 0x3F;
+	}
+
+	// null when the move is not a promotion
+	public static PieceType promotion(int move) {
+		int type = move >>> 12 & 0x7;
+		return type == 0 ? null : TYPES[type];
+	}
+
+	public static boolean isPromotion(int move) {
+		return (move & 0x7000) != 0;
+	}
+
+	public static boolean isCapture(int move) {
+		return (move & (CAPTURE | EN_PASSANT)) != 0;
+	}
+
+	// the 16 bit move, source, target and promotion, as stored in archives and books
+	public static int withoutFlags(int move) {
+		return move & 0xFFFF;
+	}
+
+	public static boolean hasFlag(int move, int flag) {
+		return (move & flag) != 0;
+	}
+
+	public static String squareName(int square) {
+		return "" + (char) ('a' + (square & 7)) + (8 - (square >>> 3));
+	}
+
+	// the move without flags of coordinate notation like "e7e8q", NONE when it is malformed
+	public static int parse(CharSequence text) {
+		if (text.length() != 4 && text.length() != 5)
+			return NONE;
+		int source = parseSquare(text, 0);
+		int target = parseSquare(text, 2);
+		if (source < 0 || target < 0 || source == target)
+			return NONE;
+		if (text.length() == 4)
+			return of(source, target, 0);
+		char letter = Character.toLowerCase(text.charAt(4));
+		for (PieceType type : TYPES)
+			if (type != PieceType.PAWN && type != PieceType.KING && type.getLetter() == letter)
+				return of(source, target, type, 0);
+		return NONE;
+	}
+
+	private static int parseSquare(CharSequence text, int start) {
+		int column = text.charAt(start) - 'a';
+		int rank = text.charAt(start + 1) - '1';
+		return column < 0 || column > 7 || rank < 0 || rank > 7 ? -1 : (7 - rank) * 8 + column;
+	}
+
+	// coordinate notation, like "e2e4" or "e7e8q"
+	public static String toString(int move) {
+		String name = squareName(source(move)) + squareName(target(move));
+		PieceType promotion = promotion(move);
+		return promotion == null ? name : name + promotion.getLetter();
+	}
+}
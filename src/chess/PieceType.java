@@ -0,0 +1,21 @@
+package chess;
+
+public enum PieceType {
+	PAWN('p'),
+	KNIGHT('n'),
+	BISHOP('b'),
+	ROOK('r'),
+	QUEEN('q'),
+	KING('k');
+
+	private final char letter;
+
+	private PieceType(char letter) {
+		this.letter = letter;
+	}
+
+	// lower case letter used by coordinate and FEN notation
+	public char getLetter() {
+		return letter;
+	}
+}
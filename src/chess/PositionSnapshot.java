@@ -0,0 +1,143 @@
+package chess;
+
+/*
+ * Immutable copy of a position, a byte per square holding the piece kind
+ * plus one (see Bitboards.index, 0 for an empty square) and the state FEN
+ * keeps. A match publishes a new snapshot once each performed move is
+ * complete, so other threads read the game without locking the player out
+ * and never see half a castling or en passant capture.
+ *
+ * The side to move is the FEN one: after checkmate it is the mated side.
+ */
+public final class PositionSnapshot {
+	private static final Color[] COLORS = Color.values();
+	private static final PieceType[] TYPES = PieceType.values();
+
+	private final byte[] squares;
+	private final Color sideToMove;
+	private final int castlingRights;
+	private final int enPassantSquare;
+	private final int halfmoveClock;
+	private final int fullmoveNumber;
+	private final boolean check;
+	private final boolean checkMate;
+	private final long positionKey;
+	private final int lastMove;
+
+	PositionSnapshot(byte[] squares, Color sideToMove, int castlingRights, int enPassantSquare, int halfmoveClock,
+			int fullmoveNumber, boolean check, boolean checkMate, long positionKey, int lastMove) {
+		this.squares = squares;
+		this.sideToMove = sideToMove;
+		this.castlingRights = castlingRights;
+		this.enPassantSquare = enPassantSquare;
+		this.halfmoveClock = halfmoveClock;
+		this.fullmoveNumber = fullmoveNumber;
+		this.check = check;
+		this.checkMate = checkMate;
+		this.positionKey = positionKey;
+		this.lastMove = lastMove;
+	}
+
+	// null for an empty square
+	public PieceType getType(int square) {
+		int kind = squares[square] - 1;
+		return kind < 0 ? null : TYPES[kind % TYPES.length];
+	}
+
+	// null for an empty square
+	public Color getColor(int square) {
+		int kind = squares[square] - 1;
+		return kind < 0 ? null : COLORS[kind / TYPES.length];
+	}
+
+	public Color getSideToMove() {
+		return sideToMove;
+	}
+
+	// Zobrist castling bits
+	public int getCastlingRights() {
+		return castlingRights;
+	}
+
+	// #specialmove en passant: the square a pawn may capture on, -1 for none
+	public int getEnPassantSquare() {
+		return enPassantSquare;
+	}
+
+	public int getHalfmoveClock() {
+		return halfmoveClock;
+	}
+
+	public int getFullmoveNumber() {
+		return fullmoveNumber;
+	}
+
+	public boolean getCheck() {
+		return check;
+	}
+
+	public boolean getCheckMate() {
+		return checkMate;
+	}
+
+	public long getPositionKey() {
+		return positionKey;
+	}
+
+	// Move.NONE before the first move
+	public int getLastMove() {
+		return lastMove;
+	}
+
+	public String toFen() {
+		return appendFen(new StringBuilder(90)).toString();
+	}
+
+	// writes the position in Forsyth-Edwards Notation to sb
+	public StringBuilder appendFen(StringBuilder sb) {
+		for (int row = 0; row < 8; row++) {
+			if (row > 0)
+				sb.append('/');
+			int empty = 0;
+			for (int column = 0; column < 8; column++) {
+				PieceType type = getType(row * 8 + column);
+				if (type == null) {
+					empty++;
+					continue;
+				}
+				if (empty > 0)
+					sb.append(empty);
+				empty = 0;
+				char letter = type.getLetter();
+				sb.append(getColor(row * 8 + column) == Color.WHITE ? Character.toUpperCase(letter) : letter);
+			}
+			if (empty > 0)
+				sb.append(empty);
+		}
+		return appendState(sb, sideToMove, castlingRights, enPassantSquare, halfmoveClock, fullmoveNumber);
+	}
+
+	// the FEN fields after the piece placement, shared with ChessMatch
+	static StringBuilder appendState(StringBuilder sb, Color sideToMove, int castlingRights, int enPassantSquare,
+			int halfmoveClock, int fullmoveNumber) {
+		sb.append(sideToMove == Color.WHITE ? " w " : " b ");
+
+		if (castlingRights == 0)
+			sb.append('-');
+		if ((castlingRights & Zobrist.WHITE_KINGSIDE) != 0)
+			sb.append('K');
+		if ((castlingRights & Zobrist.WHITE_QUEENSIDE) != 0)
+			sb.append('Q');
+		if ((castlingRights & Zobrist.BLACK_KINGSIDE) != 0)
+			sb.append('k');
+		if ((castlingRights & Zobrist.BLACK_QUEENSIDE) != 0)
+			sb.append('q');
+
+		sb.append(' ');
+		if (enPassantSquare < 0)
+			sb.append('-');
+		else
+			sb.append((char) ('a' + (enPassantSquare & 7))).append((char) ('8' - (enPassantSquare >>> 3)));
+		return sb.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+	}
+}
@@ -0,0 +1,61 @@
+package chess;
+
+/*
+ * Random keys for the 64-bit position hash. They come from a fixed seed so
+ * the same position always gets the same key, also across runs, which lets
+ * keys be stored in files.
+ */
+public final class Zobrist {
+	public static final int WHITE_KINGSIDE = 1;
+	public static final int WHITE_QUEENSIDE = 2;
+	public static final int BLACK_KINGSIDE = 4;
+	public static final int BLACK_QUEENSIDE = 8;
+
+	private static final long[][] PIECES = new long[Bitboards.KINDS][Bitboards.SQUARES];
+	private static final long[] CASTLING = new long[16];
+	private static final long[] EN_PASSANT = new long[8];
+	private static final long BLACK_TO_MOVE;
+
+	private static long seed = 0x9E3779B97F4A7C15L;
+
+	static {
+		for (long[] keys : PIECES)
+			for (int square = 0; square < keys.length; square++)
+				keys[square] = next();
+		long[] rights = { next(), next(), next(), next() };
+		for (int i = 0; i < CASTLING.length; i++)
+			for (int bit = 0; bit < rights.length; bit++)
+				if ((i & 1 << bit) != 0)
+					CASTLING[i] ^= rights[bit];
+		for (int column = 0; column < EN_PASSANT.length; column++)
+			EN_PASSANT[column] = next();
+		BLACK_TO_MOVE = next();
+	}
+
+	private Zobrist() {
+	}
+
+	// SplitMix64, spelled out so the keys never depend on the JDK
+	private static long next() {
+		long z = seed += 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	public static long piece(int pieceKind, int square) {
+		return PIECES[pieceKind][square];
+	}
+
+	public static long castling(int rights) {
+		return CASTLING[rights];
+	}
+
+	public static long enPassant(int column) {
+		return EN_PASSANT[column];
+	}
+
+	public static long blackToMove() {
+		return BLACK_TO_MOVE;
+	}
+}
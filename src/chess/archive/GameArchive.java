@@ -0,0 +1,190 @@
+package chess.archive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import chess.ChessMatch;
+import chess.ChessPosition;
+import chess.Move;
+import chess.PieceType;
+import chess.exceptions.ChessException;
+
+/*
+ * Binary game archive read through memory mapping, big endian throughout.
+ *
+ * The data file starts with its magic and version (4 bytes each), followed by
+ * the games. A game is an 8 byte header holding the ply count (2 bytes), the
+ * result code (1), a reserved byte, the FEN length (2) and the tags length
+ * (2), then the FEN of the initial position (empty for the standard one), the
+ * tags as "name\0value\0" pairs in UTF-8 and a 16 bit move per ply: source
+ * square (bits 0-5), target square (6-11) and promotion piece type ordinal
+ * (12-14), the low half of a chess.Move.
+ *
+ * The index file, the data path plus ".idx", has its own magic and version
+ * and then the 8 byte offset of every game in the data file, so game N is
+ * found without reading any other.
+ */
+public class GameArchive implements Closeable {
+	public static final int DATA_MAGIC = 0x58474D31; // "XGM1"
+	public static final int INDEX_MAGIC = 0x58494431; // "XID1"
+	public static final int VERSION = 1;
+	public static final int DATA_HEADER_BYTES = 8;
+	public static final int INDEX_HEADER_BYTES = 8;
+	public static final int GAME_HEADER_BYTES = 8;
+	public static final int MAX_PLIES = 0xFFFF;
+	public static final int MAX_BLOCK_BYTES = 0xFFFF;
+
+	private static final String[] RESULTS = { "*", "1-0", "0-1", "1/2-1/2" };
+
+	// a mapping can't pass 2 GB, so big files are mapped in overlapping
+	// chunks and every game lies whole inside the chunk its offset falls in
+	private static final long CHUNK_BYTES = 1L << 30;
+	private static final long MAX_GAME_BYTES = GAME_HEADER_BYTES + 2L * MAX_BLOCK_BYTES + 2L * MAX_PLIES;
+
+	private final FileChannel dataChannel;
+	private final FileChannel indexChannel;
+	private final MappedByteBuffer[] chunks;
+	private final MappedByteBuffer[] indexChunks;
+	private final long games;
+
+	public GameArchive(Path path) throws IOException {
+		this.dataChannel = FileChannel.open(path, StandardOpenOption.READ);
+		this.indexChannel = FileChannel.open(indexPath(path), StandardOpenOption.READ);
+
+		long size = dataChannel.size();
+		chunks = new MappedByteBuffer[(int) Math.max(1, (size + CHUNK_BYTES - 1) / CHUNK_BYTES)];
+		for (int i = 0; i < chunks.length; i++) {
+			long start = i * CHUNK_BYTES;
+			chunks[i] = dataChannel.map(FileChannel.MapMode.READ_ONLY, start,
+					Math.min(size - start, CHUNK_BYTES + MAX_GAME_BYTES));
+		}
+		long indexSize = indexChannel.size();
+		indexChunks = new MappedByteBuffer[(int) Math.max(1, (indexSize + CHUNK_BYTES - 1) / CHUNK_BYTES)];
+		for (int i = 0; i < indexChunks.length; i++) {
+			long start = i * CHUNK_BYTES;
+			indexChunks[i] = indexChannel.map(FileChannel.MapMode.READ_ONLY, start,
+					Math.min(indexSize - start, CHUNK_BYTES));
+		}
+
+		if (size < DATA_HEADER_BYTES || chunks[0].getInt(0) != DATA_MAGIC || chunks[0].getInt(4) != VERSION)
+			throw new IOException(path + " is not a game archive");
+		if (indexSize < INDEX_HEADER_BYTES || indexChunks[0].getInt(0) != INDEX_MAGIC
+				|| indexChunks[0].getInt(4) != VERSION)
+			throw new IOException(indexPath(path) + " is not a game archive index");
+		this.games = (indexSize - INDEX_HEADER_BYTES) / 8;
+	}
+
+	public static Path indexPath(Path path) {
+		return path.resolveSibling(path.getFileName() + ".idx");
+	}
+
+	static int resultCode(String result) {
+		for (int i = 0; i < RESULTS.length; i++)
+			if (RESULTS[i].equals(result))
+				return i;
+		return 0;
+	}
+
+	public long size() {
+		return games;
+	}
+
+	public int plies(long game) {
+		long offset = offset(game);
+		return chunk(offset).getShort(position(offset)) & 0xFFFF;
+	}
+
+	public String result(long game) {
+		long offset = offset(game);
+		return RESULTS[chunk(offset).get(position(offset) + 2) & 3];
+	}
+
+	// FEN of the initial position of the game
+	public String fen(long game) {
+		long offset = offset(game);
+		MappedByteBuffer chunk = chunk(offset);
+		int p = position(offset);
+		int length = chunk.getShort(p + 4) & 0xFFFF;
+		return length == 0 ? ChessMatch.START_FEN : string(chunk, p + GAME_HEADER_BYTES, length, true);
+	}
+
+	public Map<String, String> tags(long game) {
+		long offset = offset(game);
+		MappedByteBuffer chunk = chunk(offset);
+		int p = position(offset);
+		int start = p + GAME_HEADER_BYTES + (chunk.getShort(p + 4) & 0xFFFF);
+		String text = string(chunk, start, chunk.getShort(p + 6) & 0xFFFF, false);
+		Map<String, String> tags = new LinkedHashMap<>();
+		for (int i = 0; i < text.length();) {
+			int name = text.indexOf('\0', i);
+			int value = text.indexOf('\0', name + 1);
+			tags.put(text.substring(i, name), text.substring(name + 1, value));
+			i = value + 1;
+		}
+		return tags;
+	}
+
+	// 16 bit move of the ply, in the low bits of a chess.Move without its flags
+	public int move(long game, int ply) {
+		long offset = offset(game);
+		MappedByteBuffer chunk = chunk(offset);
+		int p = position(offset);
+		int plies = chunk.getShort(p) & 0xFFFF;
+		if (ply < 0 || ply >= plies)
+			throw new IndexOutOfBoundsException("Game " + game + " has " + plies + " plies");
+		int moves = p + GAME_HEADER_BYTES + (chunk.getShort(p + 4) & 0xFFFF) + (chunk.getShort(p + 6) & 0xFFFF);
+		return chunk.getShort(moves + 2 * ply) & 0xFFFF;
+	}
+
+	// the match after the first plies of the game
+	public ChessMatch replay(long game, int plies) {
+		ChessMatch chessMatch = new ChessMatch(fen(game));
+		for (int ply = 0; ply < plies; ply++) {
+			int move = move(game, ply);
+			PieceType promotion = Move.promotion(move);
+			try {
+				chessMatch.performChessMove(ChessPosition.fromSquare(Move.source(move)),
+						ChessPosition.fromSquare(Move.target(move)),
+						promotion == null ? null : String.valueOf(promotion.getLetter()));
+			} catch (ChessException e) {
+				throw new ChessException("Game " + game + ", ply " + ply + ": " + e.getMessage());
+			}
+		}
+		return chessMatch;
+	}
+
+	private long offset(long game) {
+		if (game < 0 || game >= games)
+			throw new IndexOutOfBoundsException("The archive has " + games + " games");
+		long position = INDEX_HEADER_BYTES + 8 * game;
+		return indexChunks[(int) (position / CHUNK_BYTES)].getLong((int) (position % CHUNK_BYTES));
+	}
+
+	private MappedByteBuffer chunk(long offset) {
+		return chunks[(int) (offset / CHUNK_BYTES)];
+	}
+
+	private static int position(long offset) {
+		return (int) (offset % CHUNK_BYTES);
+	}
+
+	private static String string(MappedByteBuffer chunk, int start, int length, boolean ascii) {
+		byte[] bytes = new byte[length];
+		chunk.get(start, bytes);
+		return new String(bytes, ascii ? StandardCharsets.US_ASCII : StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public void close() throws IOException {
+		try (indexChannel) {
+			dataChannel.close();
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package chess.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import chess.ChessMatch;
+import chess.Color;
+
+// appends matches to a game archive, see GameArchive for the layout
+public class GameArchiveWriter implements Closeable {
+	private final DataOutputStream data;
+	private final DataOutputStream index;
+	private long offset;
+	private long games;
+
+	public GameArchiveWriter(Path path) throws IOException {
+		this.data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+		this.index = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(GameArchive.indexPath(path)), 1 << 16));
+		data.writeInt(GameArchive.DATA_MAGIC);
+		data.writeInt(GameArchive.VERSION);
+		offset = GameArchive.DATA_HEADER_BYTES;
+		index.writeInt(GameArchive.INDEX_MAGIC);
+		index.writeInt(GameArchive.VERSION);
+	}
+
+	public long getGames() {
+		return games;
+	}
+
+	// result is used when the match didn't end in checkmate, like "1/2-1/2"
+	public void add(ChessMatch chessMatch, Map<String, String> tags, String result) throws IOException {
+		int[] moves = chessMatch.getMoveHistory();
+		if (moves.length > GameArchive.MAX_PLIES)
+			throw new IOException("A game can't have more than " + GameArchive.MAX_PLIES + " plies");
+		if (chessMatch.getCheckMate())
+			result = chessMatch.getCurrentPlayer() == Color.WHITE ? "1-0" : "0-1";
+
+		byte[] fen = chessMatch.getInitialFen().equals(ChessMatch.START_FEN) ? new byte[0]
+				: chessMatch.getInitialFen().getBytes(StandardCharsets.US_ASCII);
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, String> tag : tags.entrySet())
+			sb.append(tag.getKey()).append('\0').append(tag.getValue()).append('\0');
+		byte[] tagBytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+		if (tagBytes.length > GameArchive.MAX_BLOCK_BYTES || fen.length > GameArchive.MAX_BLOCK_BYTES)
+			throw new IOException("Tags and FEN must fit in " + GameArchive.MAX_BLOCK_BYTES + " bytes");
+
+		index.writeLong(offset);
+		data.writeShort(moves.length);
+		data.writeByte(GameArchive.resultCode(result));
+		data.writeByte(0);
+		data.writeShort(fen.length);
+		data.writeShort(tagBytes.length);
+		data.write(fen);
+		data.write(tagBytes);
+		// the low 16 bits of a packed move are its source, target and promotion
+		for (int move : moves)
+			data.writeShort(move);
+		offset += GameArchive.GAME_HEADER_BYTES + fen.length + tagBytes.length + 2L * moves.length;
+		games++;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try (data; index) {
+			data.flush();
+			index.flush();
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package chess.book;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.Move;
+import chess.PieceType;
+
+/*
+ * Opening book of this program, built by OpeningBookBuilder: 16 byte big
+ * endian entries of ChessMatch position key (8 bytes), move (2), weight (2)
+ * and a reserved field (4), sorted by key as an unsigned number. Moves are
+ * written as 16 bits (see toBookMove) with castling as the king taking its
+ * own rook. Books of other programs hash positions differently, so they
+ * can't be read: their keys just never match.
+ */
+public class OpeningBook implements Closeable {
+	public static final int ENTRY_BYTES = 16;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer entries;
+	private final int size;
+
+	public OpeningBook(Path path) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		if (channel.size() % ENTRY_BYTES != 0 || channel.size() / ENTRY_BYTES > Integer.MAX_VALUE / ENTRY_BYTES)
+			throw new IOException(path + " is not an opening book");
+		this.entries = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		this.size = (int) (channel.size() / ENTRY_BYTES);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/*
+	 * Writes the book moves of the position, without flags (see
+	 * Move.withoutFlags), to moves and their weights to weights and returns how
+	 * many there are, at most the length of the arrays. Nothing is allocated.
+	 */
+	public int probe(ChessMatch chessMatch, int[] moves, int[] weights) {
+		long key = chessMatch.getPositionKey();
+		// first entry whose key isn't smaller
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (Long.compareUnsigned(entries.getLong(middle * ENTRY_BYTES), key) < 0)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+
+		int count = 0;
+		for (int i = low; i < size && count < moves.length && entries.getLong(i * ENTRY_BYTES) == key; i++) {
+			moves[count] = fromBookMove(chessMatch, entries.getShort(i * ENTRY_BYTES + 8) & 0xFFFF);
+			weights[count++] = entries.getShort(i * ENTRY_BYTES + 10) & 0xFFFF;
+		}
+		return count;
+	}
+
+	// a book move picked at random in proportion to the weights, Move.NONE
+	// when the position is not in the book
+	public int pick(ChessMatch chessMatch, int[] moves, int[] weights, double random) {
+		int count = probe(chessMatch, moves, weights);
+		long total = 0;
+		for (int i = 0; i < count; i++)
+			total += weights[i];
+		if (total == 0)
+			return count == 0 ? Move.NONE : moves[0];
+		long point = (long) (random * total);
+		for (int i = 0; i < count; i++) {
+			point -= weights[i];
+			if (point < 0)
+				return moves[i];
+		}
+		return moves[count - 1];
+	}
+
+	/*
+	 * Book moves keep the target column in bits 0-2, the target rank in bits
+	 * 3-5, then the source column and rank and in bits 12-14 the promotion
+	 * piece, numbered like the PieceType ordinals. Ranks count from rank 1.
+	 */
+	static int toBookMove(int move) {
+		int source = Move.source(move);
+		int target = Move.target(move);
+		PieceType promotion = Move.promotion(move);
+		// #specialmove castling, written as the king taking its rook
+		if (Move.hasFlag(move, Move.CASTLING))
+			target = target > source ? source + 3 : source - 4;
+		return (target & 7) | (7 - (target >>> 3)) << 3 | (source & 7) << 6 | (7 - (source >>> 3)) << 9
+				| (promotion == null ? 0 : promotion.ordinal()) << 12;
+	}
+
+	private static int fromBookMove(ChessMatch chessMatch, int move) {
+		int target = (7 - (move >>> 3 & 7)) * 8 + (move & 7);
+		int source = (7 - (move >>> 9 & 7)) * 8 + (move >>> 6 & 7);
+		ChessPiece piece = chessMatch.getPiece(source);
+		// #specialmove castling
+		if (piece != null && piece.getType() == PieceType.KING && Math.abs((target & 7) - (source & 7)) > 1)
+			target = target > source ? source + 2 : source - 2;
+		return source | target << 6 | (move & 0x7000);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
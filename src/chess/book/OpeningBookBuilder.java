@@ -0,0 +1,135 @@
+package chess.book;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import chess.ChessMatch;
+import chess.Color;
+import chess.pgn.PgnGame;
+import chess.pgn.PgnReader;
+import chess.pgn.San;
+
+/*
+ * Builds an OpeningBook from the first plies of PGN games. A move scores two
+ * points for every game the side that played it won and one for every draw,
+ * and moves seen in fewer games than the minimum are left out.
+ */
+public class OpeningBookBuilder {
+	private record Entry(long key, int move) {
+	}
+
+	private final int maxPlies;
+	private final int minGames;
+	private final Map<Entry, int[]> entries = new HashMap<>(); // games and points of each entry
+	private long games;
+	private long skipped;
+
+	public OpeningBookBuilder(int maxPlies, int minGames) {
+		this.maxPlies = maxPlies;
+		this.minGames = minGames;
+	}
+
+	public long getGames() {
+		return games;
+	}
+
+	public long getSkipped() {
+		return skipped;
+	}
+
+	// reads every .pgn file under the directory
+	public void addDirectory(Path directory) throws IOException {
+		List<Path> files;
+		try (Stream<Path> paths = Files.walk(directory)) {
+			files = paths.filter(p -> p.toString().toLowerCase().endsWith(".pgn")).sorted().toList();
+		}
+		for (Path file : files) {
+			try (PgnReader reader = new PgnReader(file)) {
+				PgnGame game;
+				while ((game = reader.next()) != null)
+					addGame(game);
+			}
+		}
+	}
+
+	// games starting from a FEN position or with an illegal move are skipped
+	public void addGame(PgnGame game) {
+		if (game.tag("FEN") != null) {
+			skipped++;
+			return;
+		}
+		ChessMatch chessMatch = new ChessMatch();
+		int[] buffer = new int[ChessMatch.MAX_MOVES];
+		int plies = Math.min(maxPlies, game.moves().size());
+		int[] moves = new int[plies];
+		long[] keys = new long[plies];
+		Color[] movers = new Color[plies];
+		try {
+			for (int ply = 0; ply < plies; ply++) {
+				keys[ply] = chessMatch.getPositionKey();
+				movers[ply] = chessMatch.getCurrentPlayer();
+				moves[ply] = San.parse(chessMatch, game.moves().get(ply), buffer);
+				San.perform(chessMatch, moves[ply]);
+			}
+		} catch (RuntimeException e) {
+			// a broken game is skipped whatever it throws
+			skipped++;
+			return;
+		}
+
+		games++;
+		for (int ply = 0; ply < plies; ply++) {
+			int[] counts = entries.computeIfAbsent(new Entry(keys[ply], OpeningBook.toBookMove(moves[ply])),
+					e -> new int[2]);
+			counts[0]++;
+			counts[1] += points(game.result(), movers[ply]);
+		}
+	}
+
+	private static int points(String result, Color mover) {
+		return switch (result) {
+			case "1-0" -> mover == Color.WHITE ? 2 : 0;
+			case "0-1" -> mover == Color.BLACK ? 2 : 0;
+			case "1/2-1/2" -> 1;
+			default -> 0;
+		};
+	}
+
+	// writes the entries sorted by key, the heaviest move of a position first,
+	// and returns how many were written
+	public int write(Path path) throws IOException {
+		List<Map.Entry<Entry, int[]>> sorted = new ArrayList<>();
+		int maxPoints = 0;
+		for (Map.Entry<Entry, int[]> entry : entries.entrySet()) {
+			if (entry.getValue()[0] >= minGames) {
+				sorted.add(entry);
+				maxPoints = Math.max(maxPoints, entry.getValue()[1]);
+			}
+		}
+		sorted.sort((a, b) -> {
+			int byKey = Long.compareUnsigned(a.getKey().key(), b.getKey().key());
+			return byKey != 0 ? byKey : Integer.compare(b.getValue()[1], a.getValue()[1]);
+		});
+
+		// weights are 16 bits, so big books are scaled down
+		double scale = maxPoints > 0xFFFF ? (double) 0xFFFF / maxPoints : 1;
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+			for (Map.Entry<Entry, int[]> entry : sorted) {
+				out.writeLong(entry.getKey().key());
+				out.writeShort(entry.getKey().move());
+				out.writeShort((int) (entry.getValue()[1] * scale));
+				out.writeInt(0);
+			}
+		}
+		return sorted.size();
+	}
+}
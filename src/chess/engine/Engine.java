@@ -0,0 +1,333 @@
+package chess.engine;
+
+import java.util.Arrays;
+
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.Move;
+import chess.tablebase.Tablebases;
+
+/*
+ * Negamax alpha-beta search with iterative deepening, a quiescence search
+ * over captures and promotions, and a transposition table. Searches run on
+ * a copy of the match and stop at a hard deadline; the result is the one of
+ * the deepest iteration that finished.
+ */
+public class Engine {
+	public static final int MATE = 30000;
+	public static final int MAX_PLY = 128;
+
+	private static final int INFINITY = 32000;
+	private static final int CHECK_EVERY = 1024;
+
+	private final TranspositionTable table;
+
+	private final int[][] moves = new int[MAX_PLY + 1][ChessMatch.MAX_MOVES];
+	private final int[][] moveScores = new int[MAX_PLY + 1][ChessMatch.MAX_MOVES];
+	private final int[][] killers = new int[MAX_PLY + 1][2];
+	private final int[][] pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+	private final int[] pvLength = new int[MAX_PLY + 1];
+	// position keys of the game since its last capture or pawn move, then
+	// along the searched line from root on, to spot repetitions
+	private long[] keys = new long[MAX_PLY + 1];
+	private int root;
+
+	private Tablebases tablebases;
+	private ChessMatch chessMatch;
+	private long deadline;
+	private long nodes;
+	private volatile boolean stopped;
+	private volatile boolean stopRequested;
+
+	public Engine() {
+		this(new TranspositionTable(16));
+	}
+
+	public Engine(TranspositionTable table) {
+		this.table = table;
+	}
+
+	public TranspositionTable getTable() {
+		return table;
+	}
+
+	// positions they hold are scored exactly below the root, null for none
+	public void setTablebases(Tablebases tablebases) {
+		this.tablebases = tablebases;
+	}
+
+	// makes the running search return as soon as possible, and every search
+	// started before clearStop, so a stop sent right after handing a search to
+	// another thread is not lost
+	public void stop() {
+		stopRequested = true;
+		stopped = true;
+	}
+
+	public void clearStop() {
+		stopRequested = false;
+	}
+
+	public SearchResult search(ChessMatch chessMatch, long millis) {
+		return search(chessMatch, millis, MAX_PLY);
+	}
+
+	public SearchResult search(ChessMatch chessMatch, long millis, int maxDepth) {
+		long start = System.nanoTime();
+		this.chessMatch = new ChessMatch(chessMatch);
+		this.deadline = start + millis * 1_000_000;
+		this.nodes = 0;
+		this.stopped = stopRequested;
+		for (int[] k : killers)
+			Arrays.fill(k, Move.NONE);
+		table.newSearch();
+		// the game is over, the side to move is mated
+		if (chessMatch.getCheckMate())
+			return new SearchResult(Move.NONE, -MATE, 0, 0, 0, new int[0]);
+		seedKeys();
+
+		int count = this.chessMatch.generateMoves(moves[0]);
+		if (count == 0)
+			return new SearchResult(Move.NONE, this.chessMatch.getCheck() ? -MATE : 0, 0, 0, 0, new int[0]);
+
+		SearchResult result = new SearchResult(moves[0][0], 0, 0, 0, 0, new int[] { moves[0][0] });
+		for (int depth = 1; depth <= Math.min(maxDepth, MAX_PLY); depth++) {
+			int score = search(depth, -INFINITY, INFINITY, 0);
+			if (stopped)
+				break;
+			long elapsed = (System.nanoTime() - start) / 1_000_000;
+			result = new SearchResult(pv[0][0], score, depth, nodes, elapsed, Arrays.copyOf(pv[0], pvLength[0]));
+			// the next iteration takes longer than all the previous ones together
+			if (elapsed * 2 > millis || result.isMate())
+				break;
+		}
+		long elapsed = (System.nanoTime() - start) / 1_000_000;
+		return new SearchResult(result.bestMove(), result.score(), result.depth(), nodes, elapsed,
+				result.principalVariation());
+	}
+
+	// exact score of one move at a fixed depth, from the side that plays it
+	public int scoreMove(ChessMatch chessMatch, int move, int depth) {
+		this.chessMatch = new ChessMatch(chessMatch);
+		this.deadline = Long.MAX_VALUE;
+		this.nodes = 0;
+		this.stopped = stopRequested;
+		seedKeys();
+		keys[root] = this.chessMatch.getPositionKey();
+		this.chessMatch.playMove(move);
+		return -search(depth - 1, -INFINITY, INFINITY, 1);
+	}
+
+	private int search(int depth, int alpha, int beta, int ply) {
+		pvLength[ply] = ply;
+		if (outOfTime())
+			return 0;
+
+		long key = chessMatch.getPositionKey();
+		keys[root + ply] = key;
+		if (ply > 0 && isRepetition(key, ply))
+			return 0;
+		if (ply > 0 && tablebases != null) {
+			int score = tablebaseScore(ply);
+			if (score != Tablebases.UNKNOWN)
+				return score;
+		}
+
+		boolean inCheck = chessMatch.getCheck();
+		if (inCheck)
+			depth++;
+		if (depth <= 0)
+			return quiescence(alpha, beta, ply);
+		if (ply >= MAX_PLY)
+			return Evaluation.evaluate(chessMatch);
+
+		int tableMove = Move.NONE;
+		long entry = table.probe(key);
+		if (entry != TranspositionTable.NONE) {
+			tableMove = TranspositionTable.move(entry);
+			if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+				int score = fromTable(TranspositionTable.score(entry), ply);
+				int bound = TranspositionTable.bound(entry);
+				if (bound == TranspositionTable.EXACT || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+						|| (bound == TranspositionTable.UPPER_BOUND && score <= alpha))
+					return score;
+			}
+		}
+
+		int[] list = moves[ply];
+		int count = chessMatch.generateMoves(list);
+		if (count == 0)
+			return inCheck ? -MATE + ply : 0;
+		scoreMoves(list, count, tableMove, ply);
+
+		int originalAlpha = alpha;
+		int best = -INFINITY;
+		int bestMove = Move.NONE;
+		for (int i = 0; i < count; i++) {
+			int move = pickMove(list, moveScores[ply], i, count);
+			chessMatch.playMove(move);
+			int score = -search(depth - 1, -beta, -alpha, ply + 1);
+			chessMatch.undoPlayedMove();
+			if (stopped)
+				return 0;
+
+			if (score > best) {
+				best = score;
+				bestMove = move;
+				if (score > alpha) {
+					alpha = score;
+					updatePrincipalVariation(move, ply);
+					if (score >= beta) {
+						if (!Move.isCapture(move) && killers[ply][0] != move) {
+							killers[ply][1] = killers[ply][0];
+							killers[ply][0] = move;
+						}
+						break;
+					}
+				}
+			}
+		}
+
+		int bound = best >= beta ? TranspositionTable.LOWER_BOUND
+				: best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER_BOUND;
+		table.store(key, bestMove & 0xFFFF, toTable(best, ply), depth, bound);
+		return best;
+	}
+
+	private int quiescence(int alpha, int beta, int ply) {
+		pvLength[ply] = ply;
+		if (outOfTime())
+			return 0;
+		if (tablebases != null) {
+			int score = tablebaseScore(ply);
+			if (score != Tablebases.UNKNOWN)
+				return score;
+		}
+
+		int standPat = Evaluation.evaluate(chessMatch);
+		if (ply >= MAX_PLY || standPat >= beta)
+			return standPat;
+		if (standPat > alpha)
+			alpha = standPat;
+
+		int[] list = moves[ply];
+		int count = 0;
+		int all = chessMatch.generateMoves(list);
+		for (int i = 0; i < all; i++)
+			if (Move.isCapture(list[i]) || Move.isPromotion(list[i]))
+				list[count++] = list[i];
+		scoreMoves(list, count, Move.NONE, ply);
+
+		for (int i = 0; i < count; i++) {
+			int move = pickMove(list, moveScores[ply], i, count);
+			chessMatch.playMove(move);
+			int score = -quiescence(-beta, -alpha, ply + 1);
+			chessMatch.undoPlayedMove();
+			if (stopped)
+				return 0;
+
+			if (score > alpha) {
+				if (score >= beta)
+					return score;
+				alpha = score;
+				updatePrincipalVariation(move, ply);
+			}
+		}
+		return alpha;
+	}
+
+	// mate score of the tablebase distance, UNKNOWN when no table holds the position
+	private int tablebaseScore(int ply) {
+		int value = tablebases.probe(chessMatch);
+		if (value == Tablebases.UNKNOWN || value == 0)
+			return value;
+		return value > 0 ? MATE - ply - (value - 1) : -MATE + ply + (-value - 1);
+	}
+
+	private boolean outOfTime() {
+		if (++nodes % CHECK_EVERY == 0 && System.nanoTime() > deadline)
+			stopped = true;
+		return stopped;
+	}
+
+	private boolean isRepetition(long key, int ply) {
+		for (int i = root + ply - 2; i >= 0; i -= 2)
+			if (keys[i] == key)
+				return true;
+		return false;
+	}
+
+	// the positions of the game come before the root, so the search sees a
+	// line going back to one of them as a repetition
+	private void seedKeys() {
+		long[] history = chessMatch.getRepetitionKeys();
+		if (keys.length < history.length + MAX_PLY + 1)
+			keys = new long[history.length + MAX_PLY + 1];
+		System.arraycopy(history, 0, keys, 0, history.length);
+		root = history.length;
+	}
+
+	private void updatePrincipalVariation(int move, int ply) {
+		pv[ply][ply] = move;
+		for (int i = ply + 1; i < pvLength[ply + 1]; i++)
+			pv[ply][i] = pv[ply + 1][i];
+		pvLength[ply] = Math.max(pvLength[ply + 1], ply + 1);
+	}
+
+	// table move first, then captures by most valuable victim and least valuable
+	// attacker, promotions and killer moves
+	private void scoreMoves(int[] list, int count, int tableMove, int ply) {
+		int[] scores = moveScores[ply];
+		for (int i = 0; i < count; i++) {
+			int move = list[i];
+			int score = 0;
+			if (tableMove != Move.NONE && (move & 0xFFFF) == tableMove) {
+				score = 1_000_000;
+			} else if (Move.isCapture(move)) {
+				ChessPiece victim = chessMatch.getPiece(Move.target(move));
+				int victimValue = victim == null ? Evaluation.VALUES[0] : Evaluation.VALUES[victim.getType().ordinal()];
+				int attackerValue = Evaluation.VALUES[chessMatch.getPiece(Move.source(move)).getType().ordinal()];
+				score = 100_000 + 10 * victimValue - attackerValue / 10;
+			} else if (Move.isPromotion(move)) {
+				score = 90_000 + Evaluation.VALUES[Move.promotion(move).ordinal()];
+			} else if (move == killers[ply][0]) {
+				score = 80_000;
+			} else if (move == killers[ply][1]) {
+				score = 70_000;
+			}
+			scores[i] = score;
+		}
+	}
+
+	// brings the best scored of the remaining moves to position i
+	private static int pickMove(int[] list, int[] scores, int i, int count) {
+		int best = i;
+		for (int j = i + 1; j < count; j++)
+			if (scores[j] > scores[best])
+				best = j;
+		int move = list[best];
+		list[best] = list[i];
+		list[i] = move;
+		int score = scores[best];
+		scores[best] = scores[i];
+		scores[i] = score;
+		return move;
+	}
+
+	// mate scores are stored relative to the node, not to the root
+	private static int toTable(int score, int ply) {
+		if (score >= MATE - MAX_PLY)
+			return score + ply;
+		if (score <= -MATE + MAX_PLY)
+			return score - ply;
+		return score;
+	}
+
+	private static int fromTable(int score, int ply) {
+		if (score >= MATE - MAX_PLY)
+			return score - ply;
+		if (score <= -MATE + MAX_PLY)
+			return score + ply;
+		return score;
+	}
+}
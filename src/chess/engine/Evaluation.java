@@ -0,0 +1,88 @@
+package chess.engine;
+
+import chess.ChessMatch;
+import chess.Color;
+import chess.PieceType;
+
+/*
+ * Material plus piece-square tables. The tables are laid out like the board
+ * squares (a8 first) from white's point of view, black reads them mirrored.
+ */
+public final class Evaluation {
+	public static final int[] VALUES = { 100, 320, 330, 500, 900, 0 };
+
+	private static final int[][] TABLES = {
+			// pawn
+			{ 0, 0, 0, 0, 0, 0, 0, 0,
+					50, 50, 50, 50, 50, 50, 50, 50,
+					10, 10, 20, 30, 30, 20, 10, 10,
+					5, 5, 10, 25, 25, 10, 5, 5,
+					0, 0, 0, 20, 20, 0, 0, 0,
+					5, -5, -10, 0, 0, -10, -5, 5,
+					5, 10, 10, -20, -20, 10, 10, 5,
+					0, 0, 0, 0, 0, 0, 0, 0 },
+			// knight
+			{ -50, -40, -30, -30, -30, -30, -40, -50,
+					-40, -20, 0, 0, 0, 0, -20, -40,
+					-30, 0, 10, 15, 15, 10, 0, -30,
+					-30, 5, 15, 20, 20, 15, 5, -30,
+					-30, 0, 15, 20, 20, 15, 0, -30,
+					-30, 5, 10, 15, 15, 10, 5, -30,
+					-40, -20, 0, 5, 5, 0, -20, -40,
+					-50, -40, -30, -30, -30, -30, -40, -50 },
+			// bishop
+			{ -20, -10, -10, -10, -10, -10, -10, -20,
+					-10, 0, 0, 0, 0, 0, 0, -10,
+					-10, 0, 5, 10, 10, 5, 0, -10,
+					-10, 5, 5, 10, 10, 5, 5, -10,
+					-10, 0, 10, 10, 10, 10, 0, -10,
+					-10, 10, 10, 10, 10, 10, 10, -10,
+					-10, 5, 0, 0, 0, 0, 5, -10,
+					-20, -10, -10, -10, -10, -10, -10, -20 },
+			// rook
+			{ 0, 0, 0, 0, 0, 0, 0, 0,
+					5, 10, 10, 10, 10, 10, 10, 5,
+					-5, 0, 0, 0, 0, 0, 0, -5,
+					-5, 0, 0, 0, 0, 0, 0, -5,
+					-5, 0, 0, 0, 0, 0, 0, -5,
+					-5, 0, 0, 0, 0, 0, 0, -5,
+					-5, 0, 0, 0, 0, 0, 0, -5,
+					0, 0, 0, 5, 5, 0, 0, 0 },
+			// queen
+			{ -20, -10, -10, -5, -5, -10, -10, -20,
+					-10, 0, 0, 0, 0, 0, 0, -10,
+					-10, 0, 5, 5, 5, 5, 0, -10,
+					-5, 0, 5, 5, 5, 5, 0, -5,
+					0, 0, 5, 5, 5, 5, 0, -5,
+					-10, 5, 5, 5, 5, 5, 0, -10,
+					-10, 0, 5, 0, 0, 0, 0, -10,
+					-20, -10, -10, -5, -5, -10, -10, -20 },
+			// king
+			{ -30, -40, -40, -50, -50, -40, -40, -30,
+					-30, -40, -40, -50, -50, -40, -40, -30,
+					-30, -40, -40, -50, -50, -40, -40, -30,
+					-30, -40, -40, -50, -50, -40, -40, -30,
+					-20, -30, -30, -40, -40, -30, -30, -20,
+					-10, -20, -20, -20, -20, -20, -20, -10,
+					20, 20, 0, 0, 0, 0, 20, 20,
+					20, 30, 10, 0, 0, 10, 30, 20 } };
+
+	private static final PieceType[] TYPES = PieceType.values();
+
+	private Evaluation() {
+	}
+
+	// score in centipawns from the point of view of the player to move
+	public static int evaluate(ChessMatch chessMatch) {
+		int score = 0;
+		for (PieceType type : TYPES) {
+			int[] table = TABLES[type.ordinal()];
+			int value = VALUES[type.ordinal()];
+			for (long pieces = chessMatch.getBitboard(Color.WHITE, type); pieces != 0; pieces &= pieces - 1)
+				score += value + table[Long.numberOfTrailingZeros(pieces)];
+			for (long pieces = chessMatch.getBitboard(Color.BLACK, type); pieces != 0; pieces &= pieces - 1)
+				score -= value + table[Long.numberOfTrailingZeros(pieces) ^ 56];
+		}
+		return chessMatch.getCurrentPlayer() == Color.WHITE ? score : -score;
+	}
+}
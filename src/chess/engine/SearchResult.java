@@ -0,0 +1,21 @@
+package chess.engine;
+
+import chess.Move;
+
+// bestMove is Move.NONE when the side to move has no legal move
+public record SearchResult(int bestMove, int score, int depth, long nodes, long millis, int[] principalVariation) {
+
+	public boolean isMate() {
+		return Math.abs(score) >= Engine.MATE - Engine.MAX_PLY;
+	}
+
+	public String principalVariationText() {
+		StringBuilder sb = new StringBuilder();
+		for (int move : principalVariation) {
+			if (sb.length() > 0)
+				sb.append(' ');
+			sb.append(Move.toString(move));
+		}
+		return sb.toString();
+	}
+}
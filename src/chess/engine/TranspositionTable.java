@@ -0,0 +1,153 @@
+package chess.engine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Fixed size cache of search results keyed by ChessMatch.getPositionKey(),
+ * shared by any number of threads without locks. Each entry takes two longs:
+ * the key XOR the data, then the data. A reader only trusts an entry when
+ * both halves XOR back to its key, so a write torn by another thread looks
+ * like a miss instead of a wrong result.
+ *
+ * Entries come in buckets of two. A store replaces the entry of the same
+ * position, otherwise the one with the smallest depth, where entries left by
+ * older searches count as shallower.
+ */
+public class TranspositionTable {
+	public static final int EXACT = 0;
+	public static final int LOWER_BOUND = 1;
+	public static final int UPPER_BOUND = 2;
+
+	// returned by probe when the position is not in the table
+	public static final long NONE = 0;
+
+	private static final int ENTRY_LONGS = 2;
+	private static final int BUCKET_ENTRIES = 2;
+	private static final long USED = 1L << 48;
+
+	private final long[] table;
+	private final int bucketMask;
+	private volatile int generation;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder overwrites = new LongAdder();
+
+	public TranspositionTable(int megabytes) {
+		if (megabytes < 1)
+			throw new IllegalArgumentException("The table needs at least 1 MB");
+		long buckets = Long.highestOneBit(megabytes * 1024L * 1024L / (Long.BYTES * ENTRY_LONGS * BUCKET_ENTRIES));
+		// a Java array can't go past 2^31 elements
+		buckets = Math.min(buckets, 1L << 28);
+		this.table = new long[(int) buckets * BUCKET_ENTRIES * ENTRY_LONGS];
+		this.bucketMask = (int) buckets - 1;
+	}
+
+	public int getMegabytes() {
+		return (int) ((long) table.length * Long.BYTES / (1024 * 1024));
+	}
+
+	// entries stored from now on are newer than the existing ones
+	public void newSearch() {
+		generation = (generation + 1) & 0x3F;
+	}
+
+	public void clear() {
+		Arrays.fill(table, 0);
+		hits.reset();
+		misses.reset();
+		overwrites.reset();
+	}
+
+	public long probe(long key) {
+		int index = bucket(key);
+		for (int i = 0; i < BUCKET_ENTRIES; i++, index += ENTRY_LONGS) {
+			long data = table[index + 1];
+			if ((data & USED) != 0 && (table[index] ^ data) == key) {
+				hits.increment();
+				return data;
+			}
+		}
+		misses.increment();
+		return NONE;
+	}
+
+	public void store(long key, int move, int score, int depth, int bound) {
+		int bucket = bucket(key);
+		int current = generation;
+		int replace = bucket;
+		int worst = Integer.MAX_VALUE;
+		for (int i = 0, index = bucket; i < BUCKET_ENTRIES; i++, index += ENTRY_LONGS) {
+			long data = table[index + 1];
+			if ((data & USED) != 0 && (table[index] ^ data) == key) {
+				// same position, keep the old best move when there is no new one
+				if (move == 0)
+					move = move(data);
+				replace = index;
+				break;
+			}
+			int age = (current - generation(data)) & 0x3F;
+			int worth = (data & USED) == 0 ? Integer.MIN_VALUE : depth(data) - 8 * age;
+			if (worth < worst) {
+				worst = worth;
+				replace = index;
+			}
+		}
+
+		long old = table[replace + 1];
+		if ((old & USED) != 0 && (table[replace] ^ old) != key)
+			overwrites.increment();
+		long data = (move & 0xFFFFL) | (score & 0xFFFFL) << 16 | (Math.min(Math.max(depth, 0), 255) & 0xFFL) << 32
+				| (bound & 0x3L) << 40 | (current & 0x3FL) << 42 | USED;
+		table[replace] = key ^ data;
+		table[replace + 1] = data;
+	}
+
+	private int bucket(long key) {
+		return ((int) (key ^ key >>> 32) & bucketMask) * BUCKET_ENTRIES * ENTRY_LONGS;
+	}
+
+	// 16-bit move, the low bits of chess.Move without the flags
+	public static int move(long data) {
+		return (int) (data & 0xFFFF);
+	}
+
+	public static int score(long data) {
+		return (short) (data >>> 16);
+	}
+
+	public static int depth(long data) {
+		return (int) (data >>> 32 & 0xFF);
+	}
+
+	public static int bound(long data) {
+		return (int) (data >>> 40 & 0x3);
+	}
+
+	private static int generation(long data) {
+		return (int) (data >>> 42 & 0x3F);
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getOverwrites() {
+		return overwrites.sum();
+	}
+
+	// per mille of the first entries that are in use, like UCI hashfull
+	public int getUsage() {
+		int sample = Math.min(1000, table.length / ENTRY_LONGS);
+		int used = 0;
+		for (int i = 0; i < sample; i++)
+			if ((table[i * ENTRY_LONGS + 1] & USED) != 0)
+				used++;
+		return used * 1000 / Math.max(sample, 1);
+	}
+}
@@ -0,0 +1,152 @@
+package chess.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import chess.PieceType;
+
+/*
+ * Counters and latency histograms of the hot paths of ChessMatch, published
+ * as the MBean chess:type=EngineMetrics for monitoring agents to scrape. Each
+ * histogram gives <Name>Count, <Name>TotalNanos, <Name>MeanNanos,
+ * <Name>P50Nanos, <Name>P90Nanos, <Name>P99Nanos, <Name>P999Nanos and
+ * <Name>MaxNanos, and the reset operation clears everything.
+ *
+ * Recording is off unless the JVM runs with -Dchess.metrics=true. ENABLED is
+ * a constant to the JIT, so when it is off the checks in ChessMatch compile
+ * away and not even the clock is read.
+ */
+public final class EngineMetrics implements DynamicMBean {
+	public static final boolean ENABLED = Boolean.getBoolean("chess.metrics");
+	public static final String OBJECT_NAME = "chess:type=EngineMetrics";
+
+	public static final Histogram PERFORM_CHESS_MOVE = new Histogram();
+	public static final Histogram TEST_CHECK = new Histogram();
+	public static final Histogram TEST_CHECK_MATE = new Histogram();
+	// moves generated for one piece, by PieceType ordinal
+	private static final Histogram[] GENERATE_MOVES = new Histogram[PieceType.values().length];
+	// board updates, the rook of a castling counts as a move of its own
+	public static final LongAdder MAKE_MOVE = new LongAdder();
+	public static final LongAdder UNDO_MOVE = new LongAdder();
+
+	private static final String[] PERCENTILES = { "P50", "P90", "P99", "P999" };
+	private static final double[] FRACTIONS = { 0.5, 0.9, 0.99, 0.999 };
+
+	private final Map<String, LongSupplier> attributes = new LinkedHashMap<>();
+	private final MBeanInfo info;
+
+	static {
+		for (int i = 0; i < GENERATE_MOVES.length; i++)
+			GENERATE_MOVES[i] = new Histogram();
+		if (ENABLED) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(new EngineMetrics(),
+						new ObjectName(OBJECT_NAME));
+			} catch (JMException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	private EngineMetrics() {
+		addHistogram("PerformChessMove", PERFORM_CHESS_MOVE);
+		for (PieceType type : PieceType.values()) {
+			String name = type.name().charAt(0) + type.name().substring(1).toLowerCase();
+			addHistogram("GenerateMoves" + name, GENERATE_MOVES[type.ordinal()]);
+		}
+		addHistogram("TestCheck", TEST_CHECK);
+		addHistogram("TestCheckMate", TEST_CHECK_MATE);
+		attributes.put("MakeMoveCount", MAKE_MOVE::sum);
+		attributes.put("UndoMoveCount", UNDO_MOVE::sum);
+
+		MBeanAttributeInfo[] attributeInfo = attributes.keySet().stream()
+				.map(name -> new MBeanAttributeInfo(name, "long", name, true, false, false))
+				.toArray(MBeanAttributeInfo[]::new);
+		MBeanOperationInfo reset = new MBeanOperationInfo("reset", "Clears every counter and histogram", null,
+				"void", MBeanOperationInfo.ACTION);
+		info = new MBeanInfo(getClass().getName(), "Chess engine hot paths", attributeInfo, null,
+				new MBeanOperationInfo[] { reset }, null);
+	}
+
+	private void addHistogram(String name, Histogram histogram) {
+		attributes.put(name + "Count", histogram::getCount);
+		attributes.put(name + "TotalNanos", histogram::getTotal);
+		attributes.put(name + "MeanNanos", histogram::getMean);
+		for (int i = 0; i < PERCENTILES.length; i++) {
+			double fraction = FRACTIONS[i];
+			attributes.put(name + PERCENTILES[i] + "Nanos", () -> histogram.getPercentile(fraction));
+		}
+		attributes.put(name + "MaxNanos", histogram::getMax);
+	}
+
+	public static Histogram generateMoves(PieceType type) {
+		return GENERATE_MOVES[type.ordinal()];
+	}
+
+	public static void reset() {
+		PERFORM_CHESS_MOVE.reset();
+		TEST_CHECK.reset();
+		TEST_CHECK_MATE.reset();
+		for (Histogram histogram : GENERATE_MOVES)
+			histogram.reset();
+		MAKE_MOVE.reset();
+		UNDO_MOVE.reset();
+	}
+
+	@Override
+	public Object getAttribute(String attribute) throws AttributeNotFoundException {
+		LongSupplier value = attributes.get(attribute);
+		if (value == null)
+			throw new AttributeNotFoundException(attribute);
+		return value.getAsLong();
+	}
+
+	@Override
+	public AttributeList getAttributes(String[] names) {
+		AttributeList list = new AttributeList();
+		for (String name : names) {
+			LongSupplier value = attributes.get(name);
+			if (value != null)
+				list.add(new Attribute(name, value.getAsLong()));
+		}
+		return list;
+	}
+
+	@Override
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+		throw new AttributeNotFoundException(attribute.getName() + " is read only");
+	}
+
+	@Override
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+
+	@Override
+	public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+		if (!actionName.equals("reset") || (signature != null && signature.length > 0))
+			throw new ReflectionException(new NoSuchMethodException(actionName + Arrays.toString(signature)));
+		reset();
+		return null;
+	}
+
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		return info;
+	}
+}
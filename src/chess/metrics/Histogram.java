@@ -0,0 +1,99 @@
+package chess.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Latency histogram in nanoseconds that many threads record into without
+ * locking. Buckets are log-linear as in HdrHistogram: every power of two is
+ * split into SUB_BUCKETS equal parts, so a bucket is at most 1/8 of its
+ * values wide and a percentile is off by less than 12.5%. Each bucket is a
+ * LongAdder, which stripes the counts of contending threads over cells.
+ */
+public final class Histogram {
+	private static final int SUB_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	// enough for every non-negative long
+	private static final int BUCKETS = (Long.SIZE - SUB_BITS) << SUB_BITS;
+
+	private final LongAdder[] buckets = new LongAdder[BUCKETS];
+	private final LongAdder total = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	public Histogram() {
+		for (int i = 0; i < buckets.length; i++)
+			buckets[i] = new LongAdder();
+	}
+
+	public void record(long nanos) {
+		long value = Math.max(nanos, 0);
+		buckets[bucket(value)].increment();
+		total.add(value);
+		max.accumulate(value);
+	}
+
+	// records the time since startNanos, a value of System.nanoTime()
+	public void recordSince(long startNanos) {
+		record(System.nanoTime() - startNanos);
+	}
+
+	public long getCount() {
+		long count = 0;
+		for (LongAdder bucket : buckets)
+			count += bucket.sum();
+		return count;
+	}
+
+	public long getTotal() {
+		return total.sum();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public long getMean() {
+		long count = getCount();
+		return count == 0 ? 0 : getTotal() / count;
+	}
+
+	// the highest value of the bucket holding the given fraction of the
+	// recorded values, 0 while nothing is recorded
+	public long getPercentile(double fraction) {
+		long[] counts = new long[BUCKETS];
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++)
+			count += counts[i] = buckets[i].sum();
+		if (count == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(fraction * count));
+		long seen = 0;
+		int i = 0;
+		while ((seen += counts[i]) < rank && i < BUCKETS - 1)
+			i++;
+		long highest = i == BUCKETS - 1 ? Long.MAX_VALUE : lowest(i + 1) - 1;
+		return Math.min(highest, getMax());
+	}
+
+	// counts recorded meanwhile may survive in part
+	public void reset() {
+		for (LongAdder bucket : buckets)
+			bucket.reset();
+		total.reset();
+		max.reset();
+	}
+
+	private static int bucket(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+		int magnitude = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+		int shift = magnitude - SUB_BITS;
+		return (shift + 1) << SUB_BITS | (int) (value >>> shift) & (SUB_BUCKETS - 1);
+	}
+
+	private static long lowest(int bucket) {
+		if (bucket < SUB_BUCKETS)
+			return bucket;
+		return (long) (SUB_BUCKETS | bucket & (SUB_BUCKETS - 1)) << ((bucket >> SUB_BITS) - 1);
+	}
+}
@@ -0,0 +1,31 @@
+package chess.pgn;
+
+import java.util.List;
+import java.util.Map;
+
+import chess.ChessMatch;
+import chess.exceptions.ChessException;
+
+// one game of a PGN file, with its moves still in standard algebraic notation
+public record PgnGame(Map<String, String> tags, List<String> moves, String result) {
+
+	public String tag(String name) {
+		return tags.get(name);
+	}
+
+	// plays the moves on a new match, from the FEN tag when there is one
+	public ChessMatch replay() {
+		String fen = tags.get("FEN");
+		ChessMatch chessMatch = fen != null ? new ChessMatch(fen) : new ChessMatch();
+		int[] buffer = new int[ChessMatch.MAX_MOVES];
+		for (String san : moves) {
+			try {
+				San.perform(chessMatch, San.parse(chessMatch, san, buffer));
+			} catch (ChessException e) {
+				int turn = chessMatch.getTurn();
+				throw new ChessException((turn + 1) / 2 + (turn % 2 == 1 ? ". " : "... ") + san + ": " + e.getMessage());
+			}
+		}
+		return chessMatch;
+	}
+}
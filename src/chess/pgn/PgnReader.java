@@ -0,0 +1,215 @@
+package chess.pgn;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import chess.exceptions.ChessException;
+
+/*
+ * Reads the games of a PGN file one at a time through a fixed size buffer,
+ * so files of any size are read with the same memory. Comments, variations,
+ * numeric annotation glyphs, move numbers and "e.p." annotations are
+ * skipped. Text is read as ISO-8859-1, the character set of the PGN
+ * standard.
+ */
+public class PgnReader implements Closeable {
+	public static final int BUFFER_SIZE = 1 << 16;
+	private static final String EN_PASSANT = "e.p.";
+	// longer games are taken as a broken file instead of being buffered
+	public static final int MAX_GAME_CHARACTERS = 1 << 20;
+
+	private final ReadableByteChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final StringBuilder token = new StringBuilder(64);
+	private int pushedBack = -1;
+	private int gameCharacters;
+	private long gamesRead;
+
+	public PgnReader(Path path) throws IOException {
+		this(FileChannel.open(path, StandardOpenOption.READ));
+	}
+
+	public PgnReader(ReadableByteChannel channel) {
+		this.channel = channel;
+		buffer.flip();
+	}
+
+	public long getGamesRead() {
+		return gamesRead;
+	}
+
+	// the next game, null at the end of the input
+	public PgnGame next() throws IOException {
+		Map<String, String> tags = new LinkedHashMap<>();
+		List<String> moves = new ArrayList<>();
+		gameCharacters = 0;
+
+		int c;
+		while ((c = read()) >= 0) {
+			if (Character.isWhitespace(c))
+				continue;
+			switch (c) {
+				case '[' -> {
+					// a tag after the moves starts the next game of a file missing a result
+					if (!moves.isEmpty()) {
+						pushedBack = c;
+						return game(tags, moves, "*");
+					}
+					readTag(tags);
+				}
+				case '{' -> skipUntil('}');
+				case ';' -> skipUntil('\n');
+				case '(' -> skipVariation();
+				case '%' -> skipUntil('\n');
+				default -> {
+					readToken(c);
+					String result = result();
+					if (result != null)
+						return game(tags, moves, result);
+					addMove(moves);
+				}
+			}
+		}
+		return tags.isEmpty() && moves.isEmpty() ? null : game(tags, moves, "*");
+	}
+
+	private PgnGame game(Map<String, String> tags, List<String> moves, String result) {
+		gamesRead++;
+		return new PgnGame(tags, moves, result);
+	}
+
+	private void readTag(Map<String, String> tags) throws IOException {
+		token.setLength(0);
+		int c;
+		while ((c = read()) >= 0 && c != '"' && c != ']')
+			if (!Character.isWhitespace(c))
+				token.append((char) c);
+		String name = token.toString();
+		token.setLength(0);
+		if (c == '"') {
+			while ((c = read()) >= 0 && c != '"') {
+				if (c == '\\')
+					c = read();
+				token.append((char) c);
+			}
+			while (c >= 0 && c != ']')
+				c = read();
+		}
+		if (c < 0)
+			throw new ChessException("Unterminated tag " + name);
+		tags.put(name, token.toString());
+	}
+
+	private void readToken(int first) throws IOException {
+		token.setLength(0);
+		int c = first;
+		do {
+			token.append((char) c);
+			c = read();
+		} while (c >= 0 && !Character.isWhitespace(c) && "{}()[];$".indexOf(c) < 0 && !isMoveNumberEnd(c));
+		if (c >= 0 && !Character.isWhitespace(c))
+			pushedBack = c;
+		if (c == '.') {
+			// move numbers like "12." or "12..." glued to the move
+			pushedBack = -1;
+			while ((c = read()) == '.')
+				;
+			if (c >= 0 && !Character.isWhitespace(c))
+				pushedBack = c;
+			token.setLength(0);
+		}
+	}
+
+	// a dot after digits ends a move number
+	private boolean isMoveNumberEnd(int c) {
+		return c == '.' && isDigits(token);
+	}
+
+	private String result() {
+		if (token.isEmpty())
+			return null;
+		String t = token.toString();
+		return switch (t) {
+			case "1-0", "0-1", "1/2-1/2", "*" -> t;
+			default -> null;
+		};
+	}
+
+	private void addMove(List<String> moves) {
+		// numeric annotation glyphs and bare move numbers are not moves
+		if (token.isEmpty() || token.charAt(0) == '$' || isDigits(token))
+			return;
+		// #specialmove en passant: "e.p." after the capture, also glued to it
+		String move = token.toString();
+		if (move.endsWith(EN_PASSANT))
+			move = move.substring(0, move.length() - EN_PASSANT.length());
+		if (!move.isEmpty())
+			moves.add(move);
+	}
+
+	private static boolean isDigits(CharSequence s) {
+		if (s.isEmpty())
+			return false;
+		for (int i = 0; i < s.length(); i++)
+			if (s.charAt(i) < '0' || s.charAt(i) > '9')
+				return false;
+		return true;
+	}
+
+	private void skipUntil(int end) throws IOException {
+		int c;
+		while ((c = read()) >= 0 && c != end)
+			;
+	}
+
+	// variations nest and may hold comments with parentheses in them
+	private void skipVariation() throws IOException {
+		int depth = 1;
+		int c;
+		while (depth > 0 && (c = read()) >= 0) {
+			if (c == '(')
+				depth++;
+			else if (c == ')')
+				depth--;
+			else if (c == '{')
+				skipUntil('}');
+			else if (c == ';')
+				skipUntil('\n');
+		}
+	}
+
+	private int read() throws IOException {
+		if (pushedBack >= 0) {
+			int c = pushedBack;
+			pushedBack = -1;
+			return c;
+		}
+		if (!buffer.hasRemaining()) {
+			buffer.clear();
+			int n;
+			do {
+				n = channel.read(buffer);
+			} while (n == 0);
+			buffer.flip();
+			if (n < 0)
+				return -1;
+		}
+		if (++gameCharacters > MAX_GAME_CHARACTERS)
+			throw new ChessException("Game " + (gamesRead + 1) + " is longer than " + MAX_GAME_CHARACTERS + " characters");
+		return buffer.get() & 0xFF;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
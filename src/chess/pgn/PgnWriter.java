@@ -0,0 +1,74 @@
+package chess.pgn;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import chess.ChessMatch;
+import chess.Color;
+
+// writes the moves played on a match as a PGN game
+public final class PgnWriter {
+	private static final int LINE_LENGTH = 80;
+	private static final String[] SEVEN_TAG_ROSTER = { "Event", "Site", "Date", "Round", "White", "Black", "Result" };
+
+	private PgnWriter() {
+	}
+
+	// the tags missing from the seven tag roster are written as unknown, SetUp
+	// and FEN follow the roster and come from the match itself
+	public static void write(Appendable out, ChessMatch chessMatch, Map<String, String> tags) throws IOException {
+		String result = result(chessMatch, tags.get("Result"));
+		Map<String, String> allTags = new LinkedHashMap<>();
+		for (String name : SEVEN_TAG_ROSTER)
+			allTags.put(name, tags.getOrDefault(name, "?"));
+		allTags.put("Result", result);
+		if (!chessMatch.getInitialFen().equals(ChessMatch.START_FEN)) {
+			allTags.put("SetUp", "1");
+			allTags.put("FEN", chessMatch.getInitialFen());
+		}
+		for (Map.Entry<String, String> tag : tags.entrySet())
+			if (!tag.getKey().equals("SetUp") && !tag.getKey().equals("FEN"))
+				allTags.putIfAbsent(tag.getKey(), tag.getValue());
+		for (Map.Entry<String, String> tag : allTags.entrySet()) {
+			out.append('[').append(tag.getKey()).append(" \"");
+			out.append(tag.getValue().replace("\\", "\\\\").replace("\"", "\\\"")).append("\"]\n");
+		}
+		out.append('\n');
+
+		ChessMatch replay = new ChessMatch(chessMatch.getInitialFen());
+		int[] moves = new int[ChessMatch.MAX_MOVES];
+		StringBuilder line = new StringBuilder(LINE_LENGTH + 16);
+		boolean first = true;
+		for (int move : chessMatch.getMoveHistory()) {
+			int turn = replay.getTurn();
+			String token = San.format(replay, move, moves);
+			if (turn % 2 == 1)
+				token = (turn + 1) / 2 + ". " + token;
+			else if (first)
+				token = (turn + 1) / 2 + "... " + token;
+			appendToken(out, line, token);
+			San.perform(replay, move);
+			first = false;
+		}
+		appendToken(out, line, result);
+		out.append(line).append("\n\n");
+	}
+
+	private static void appendToken(Appendable out, StringBuilder line, String token) throws IOException {
+		if (!line.isEmpty() && line.length() + 1 + token.length() > LINE_LENGTH) {
+			out.append(line).append('\n');
+			line.setLength(0);
+		}
+		if (!line.isEmpty())
+			line.append(' ');
+		line.append(token);
+	}
+
+	// a finished match has its own result, otherwise the given one or "*"
+	private static String result(ChessMatch chessMatch, String given) {
+		if (chessMatch.getCheckMate())
+			return chessMatch.getCurrentPlayer() == Color.WHITE ? "1-0" : "0-1";
+		return given != null ? given : "*";
+	}
+}
@@ -0,0 +1,173 @@
+package chess.pgn;
+
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.Move;
+import chess.PieceType;
+import chess.exceptions.ChessException;
+
+/*
+ * Standard algebraic notation, like "Nbd7", "exd6", "e8=Q+" or "O-O-O".
+ * Moves are resolved against the legal moves of the position, so a piece
+ * letter and the target square are usually enough.
+ */
+public final class San {
+
+	private San() {
+	}
+
+	// the legal move the san stands for, moves is a scratch buffer of
+	// ChessMatch.MAX_MOVES entries
+	public static int parse(ChessMatch chessMatch, CharSequence san, int[] moves) {
+		int end = san.length();
+		while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0)
+			end--;
+		int count = chessMatch.generateMoves(moves);
+
+		// #specialmove castling
+		if (end >= 3 && (san.charAt(0) == 'O' || san.charAt(0) == '0')) {
+			boolean kingside = end == 3;
+			if (!kingside && end != 5)
+				throw new ChessException("Invalid move " + san);
+			for (int i = 0; i < count; i++)
+				if (Move.hasFlag(moves[i], Move.CASTLING)
+						&& (Move.target(moves[i]) > Move.source(moves[i])) == kingside)
+					return moves[i];
+			throw new ChessException("Illegal move " + san);
+		}
+
+		// #specialmove promotion
+		PieceType promotion = null;
+		if (end >= 3 && (san.charAt(end - 2) == '=' || Character.isDigit(san.charAt(end - 2)))) {
+			promotion = pieceType(Character.toUpperCase(san.charAt(end - 1)));
+			if (promotion != null)
+				end -= san.charAt(end - 2) == '=' ? 2 : 1;
+		}
+
+		if (end < 2)
+			throw new ChessException("Invalid move " + san);
+		int targetColumn = san.charAt(end - 2) - 'a';
+		int targetRow = '8' - san.charAt(end - 1);
+		if (targetColumn < 0 || targetColumn > 7 || targetRow < 0 || targetRow > 7)
+			throw new ChessException("Invalid move " + san);
+		int target = targetRow * 8 + targetColumn;
+		end -= 2;
+
+		int start = 0;
+		PieceType type = PieceType.PAWN;
+		if (end > 0 && Character.isUpperCase(san.charAt(0))) {
+			type = pieceType(san.charAt(0));
+			if (type == null)
+				throw new ChessException("Invalid move " + san);
+			start = 1;
+		}
+
+		// disambiguation, captures and separators
+		int sourceColumn = -1;
+		int sourceRow = -1;
+		for (int i = start; i < end; i++) {
+			char c = san.charAt(i);
+			if (c >= 'a' && c <= 'h')
+				sourceColumn = c - 'a';
+			else if (c >= '1' && c <= '8')
+				sourceRow = '8' - c;
+			else if (c != 'x' && c != '-' && c != ':')
+				throw new ChessException("Invalid move " + san);
+		}
+
+		int found = Move.NONE;
+		for (int i = 0; i < count; i++) {
+			int move = moves[i];
+			int source = Move.source(move);
+			if (Move.target(move) != target || Move.promotion(move) != promotion
+					|| chessMatch.getPiece(source).getType() != type)
+				continue;
+			if ((sourceColumn >= 0 && (source & 7) != sourceColumn) || (sourceRow >= 0 && source >>> 3 != sourceRow))
+				continue;
+			if (found != Move.NONE)
+				throw new ChessException("Ambiguous move " + san);
+			found = move;
+		}
+		if (found == Move.NONE)
+			throw new ChessException("Illegal move " + san);
+		return found;
+	}
+
+	// the san of a legal move of the position, with the check and mate marks
+	public static String format(ChessMatch chessMatch, int move, int[] moves) {
+		StringBuilder sb = new StringBuilder(8);
+		int source = Move.source(move);
+		int target = Move.target(move);
+		PieceType type = chessMatch.getPiece(source).getType();
+
+		if (Move.hasFlag(move, Move.CASTLING)) {
+			sb.append(target > source ? "O-O" : "O-O-O");
+		} else {
+			if (type == PieceType.PAWN) {
+				if (Move.isCapture(move))
+					sb.append(Move.squareName(source).charAt(0));
+			} else {
+				sb.append(Character.toUpperCase(type.getLetter()));
+				appendDisambiguation(sb, chessMatch, move, type, moves);
+			}
+			if (Move.isCapture(move))
+				sb.append('x');
+			sb.append(Move.squareName(target));
+			if (Move.isPromotion(move))
+				sb.append('=').append(Character.toUpperCase(Move.promotion(move).getLetter()));
+		}
+
+		chessMatch.playMove(move);
+		if (chessMatch.getCheck())
+			sb.append(chessMatch.generateMoves(moves) == 0 ? '#' : '+');
+		chessMatch.undoPlayedMove();
+		return sb.toString();
+	}
+
+	// the column, the row or both of the source when other pieces of the same
+	// type can reach the target too
+	private static void appendDisambiguation(StringBuilder sb, ChessMatch chessMatch, int move, PieceType type,
+			int[] moves) {
+		int source = Move.source(move);
+		boolean ambiguous = false, sameColumn = false, sameRow = false;
+		int count = chessMatch.generateMoves(moves);
+		for (int i = 0; i < count; i++) {
+			int other = Move.source(moves[i]);
+			if (other == source || Move.target(moves[i]) != Move.target(move)
+					|| chessMatch.getPiece(other).getType() != type)
+				continue;
+			ambiguous = true;
+			sameColumn |= (other & 7) == (source & 7);
+			sameRow |= other >>> 3 == source >>> 3;
+		}
+		if (!ambiguous)
+			return;
+		String name = Move.squareName(source);
+		if (!sameColumn)
+			sb.append(name.charAt(0));
+		else if (!sameRow)
+			sb.append(name.charAt(1));
+		else
+			sb.append(name);
+	}
+
+	// plays a legal move the way a player would, so it goes to the match history
+	public static ChessPiece perform(ChessMatch chessMatch, int move) {
+		PieceType promotion = Move.promotion(move);
+		return chessMatch.performChessMove(ChessPosition.fromSquare(Move.source(move)),
+				ChessPosition.fromSquare(Move.target(move)),
+				promotion == null ? null : String.valueOf(promotion.getLetter()));
+	}
+
+	private static PieceType pieceType(char letter) {
+		return switch (letter) {
+			case 'N' -> PieceType.KNIGHT;
+			case 'B' -> PieceType.BISHOP;
+			case 'R' -> PieceType.ROOK;
+			case 'Q' -> PieceType.QUEEN;
+			case 'K' -> PieceType.KING;
+			default -> null;
+		};
+	}
+}
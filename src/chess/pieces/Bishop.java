@@ -1,10 +1,11 @@
 package chess.pieces;
 
 import boardgame.Board;
-import boardgame.Position;
+import chess.Bitboards;
 import chess.ChessMatch;
 import chess.ChessPiece;
 import chess.Color;
+import chess.PieceType;
 
 public class Bishop extends ChessPiece {
 
@@ -18,46 +19,12 @@ public class Bishop extends ChessPiece {
 	}
 
 	@Override
-	public boolean[][] getAllPossibleMoves() {
-		boolean[][] pm = new boolean[getBoard().getRows()][getBoard().getColumns()];
-		Position p = new Position(0, 0);
-		// nw
-		p.setValues(this.position.getRow() - 1, this.position.getColumn() - 1);
-		while (getBoard().positionExists(p) && !getBoard().thereIsAPiece(p)) {
-			pm[p.getRow()][p.getColumn()] = true;
-			p.setValues(p.getRow() - 1, p.getColumn() - 1);
-		}
-		if (getBoard().positionExists(p) && isThereOpponentPiece(p))
-			pm[p.getRow()][p.getColumn()] = true;
-
-		// ne
-		p.setValues(this.position.getRow() - 1, this.position.getColumn() + 1);
-		while (getBoard().positionExists(p) && !getBoard().thereIsAPiece(p)) {
-			pm[p.getRow()][p.getColumn()] = true;
-			p.setValues(p.getRow() - 1, p.getColumn() + 1);
-		}
-		if (getBoard().positionExists(p) && isThereOpponentPiece(p))
-			pm[p.getRow()][p.getColumn()] = true;
-
-		// se
-		p.setValues(this.position.getRow() + 1, this.position.getColumn() + 1);
-		while (getBoard().positionExists(p) && !getBoard().thereIsAPiece(p)) {
-			pm[p.getRow()][p.getColumn()] = true;
-			p.setValues(p.getRow() + 1, p.getColumn() + 1);
-		}
-		if (getBoard().positionExists(p) && isThereOpponentPiece(p))
-			pm[p.getRow()][p.getColumn()] = true;
-
-		// sw
-		p.setValues(this.position.getRow() + 1, this.position.getColumn() - 1);
-		while (getBoard().positionExists(p) && !getBoard().thereIsAPiece(p)) {
-			pm[p.getRow()][p.getColumn()] = true;
-			p.setValues(p.getRow() + 1, p.getColumn() - 1);
-		}
-		if (getBoard().positionExists(p) && isThereOpponentPiece(p))
-			pm[p.getRow()][p.getColumn()] = true;
-
-		return pm;
+	public PieceType getType() {
+		return PieceType.BISHOP;
 	}
 
+	@Override
+	public long getAttacks() {
+		return Bitboards.bishopAttacks(getSquare(), getBoard().getOccupied());
+	}
 }
@@ -1,10 +1,12 @@
 package chess.pieces;
 
 import boardgame.Board;
-import boardgame.Position;
+import chess.Bitboards;
 import chess.ChessMatch;
 import chess.ChessPiece;
 import chess.Color;
+import chess.Move;
+import chess.PieceType;
 
 public class King extends ChessPiece {
 
@@ -17,99 +19,61 @@ public class King extends ChessPiece {
 		return "K";
 	}
 
-	private boolean canMove(Position position) {
-		ChessPiece chessPiece = (ChessPiece) getBoard().piece(position);
-		return chessPiece == null || !chessPiece.getColor().equals(this.getColor());
+	@Override
+	public PieceType getType() {
+		return PieceType.KING;
 	}
 
-	private boolean testRookCastling(Position position) {
-		ChessPiece p = (ChessPiece) getBoard().piece(position);
+	private boolean testRookCastling(int square) {
+		ChessPiece p = (ChessPiece) getBoard().pieceAt(square);
 		return p != null && p instanceof Rook && p.getColor() == this.getColor() && p.getMoveCount() == 0;
 	}
 
 	@Override
-	public boolean[][] getAllPossibleMoves() {
-		boolean[][] pm = new boolean[getBoard().getRows()][getBoard().getColumns()];
-		Position p = new Position(0, 0);
-
-//		int v1[] = { +1, -1 };
-//		for (int i : v1) {
-//			p.setValues(position.getRow() + i, position.getColumn());
-//			if (getBoard().positionExists(p) && canMove(p))
-//				pm[p.getRow()][p.getColumn()] = true;
-//
-//			p.setValues(position.getRow(), position.getColumn() + i);
-//			if (getBoard().positionExists(p) && canMove(p))
-//				pm[p.getRow()][p.getColumn()] = true;
-//
-//			p.setValues(position.getRow() + i, position.getColumn() + i);
-//			if (getBoard().positionExists(p) && canMove(p))
-//				pm[p.getRow()][p.getColumn()] = true;
-//
-//			p.setValues(position.getRow() + i, position.getColumn() - i);
-//			if (getBoard().positionExists(p) && canMove(p))
-//				pm[p.getRow()][p.getColumn()] = true;
-//		}
-
-		// north
-		p.setValues(position.getRow() - 1, position.getColumn());
-		if (getBoard().positionExists(p) && canMove(p))
-			pm[p.getRow()][p.getColumn()] = true;
-
-		// south
-		p.setValues(position.getRow() + 1, position.getColumn());
-		if (getBoard().positionExists(p) && canMove(p))
-			pm[p.getRow()][p.getColumn()] = true;
-
-		// east
-		p.setValues(position.getRow(), position.getColumn() + 1);
-		if (getBoard().positionExists(p) && canMove(p))
-			pm[p.getRow()][p.getColumn()] = true;
-
-		// west
-		p.setValues(position.getRow(), position.getColumn() - 1);
-		if (getBoard().positionExists(p) && canMove(p))
-			pm[p.getRow()][p.getColumn()] = true;
-
-		// nw
-		p.setValues(position.getRow() - 1, position.getColumn() - 1);
-		if (getBoard().positionExists(p) && canMove(p))
-			pm[p.getRow()][p.getColumn()] = true;
-
-		// ne
-		p.setValues(position.getRow() - 1, position.getColumn() + 1);
-		if (getBoard().positionExists(p) && canMove(p))
-			pm[p.getRow()][p.getColumn()] = true;
-
-		// sw
-		p.setValues(position.getRow() + 1, position.getColumn() - 1);
-		if (getBoard().positionExists(p) && canMove(p))
-			pm[p.getRow()][p.getColumn()] = true;
+	public long getAttacks() {
+		return Bitboards.kingAttacks(getSquare());
+	}
 
-		// se
-		p.setValues(position.getRow() + 1, position.getColumn() + 1);
-		if (getBoard().positionExists(p) && canMove(p))
-			pm[p.getRow()][p.getColumn()] = true;
+	@Override
+	public long getPossibleTargets() {
+		long targets = super.getPossibleTargets();
+		int square = getSquare();
+		int column = position.getColumn();
 
 		// #specialmove castling
-		if (getMoveCount() == 0 && !chessMatch.getCheck()) {
+		// the king can't castle out of, through or into check
+		Color opponent = chessMatch.opponent(color);
+		if (getMoveCount() == 0 && !chessMatch.isAttacked(square, opponent)) {
 			// #specialmove castling kingside rook
-			if (testRookCastling(new Position(position.getRow(), position.getColumn() + 3))) {
-				if (getBoard().piece(position.getRow(), position.getColumn() + 1) == null
-						&& getBoard().piece(position.getRow(), position.getColumn() + 2) == null) {
-					pm[position.getRow()][position.getColumn() + 2] = true;
+			if (column + 3 < getBoard().getColumns() && testRookCastling(square + 3)) {
+				if (!getBoard().isOccupied(square + 1) && !getBoard().isOccupied(square + 2)
+						&& !chessMatch.isAttacked(square + 1, opponent) && !chessMatch.isAttacked(square + 2, opponent)) {
+					targets |= Bitboards.bit(square + 2);
 				}
 			}
 			// #specialmove castling queenside rook
-			if (testRookCastling(new Position(position.getRow(), position.getColumn() - 4))) {
-				if (getBoard().piece(position.getRow(), position.getColumn() - 1) == null
-						&& getBoard().piece(position.getRow(), position.getColumn() - 2) == null
-						&& getBoard().piece(position.getRow(), position.getColumn() - 3) == null) {
-					pm[position.getRow()][position.getColumn() - 2] = true;
+			if (column - 4 >= 0 && testRookCastling(square - 4)) {
+				if (!getBoard().isOccupied(square - 1) && !getBoard().isOccupied(square - 2)
+						&& !getBoard().isOccupied(square - 3) && !chessMatch.isAttacked(square - 1, opponent)
+						&& !chessMatch.isAttacked(square - 2, opponent)) {
+					targets |= Bitboards.bit(square - 2);
 				}
 			}
 		}
 
-		return pm;
+		return targets;
+	}
+
+	@Override
+	public int generateMoves(int[] moves, int count, long targets) {
+		int source = getSquare();
+		for (; targets != 0; targets &= targets - 1) {
+			int target = Long.numberOfTrailingZeros(targets);
+			if (Math.abs(target - source) == 2)
+				moves[count++] = Move.of(source, target, Move.CASTLING);
+			else
+				moves[count++] = Move.of(source, target, getBoard().isOccupied(target) ? Move.CAPTURE : 0);
+		}
+		return count;
 	}
 }
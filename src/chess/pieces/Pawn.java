@@ -1,10 +1,12 @@
 package chess.pieces;
 
 import boardgame.Board;
-import boardgame.Position;
+import chess.Bitboards;
 import chess.ChessMatch;
 import chess.ChessPiece;
 import chess.Color;
+import chess.Move;
+import chess.PieceType;
 
 public class Pawn extends ChessPiece {
 
@@ -25,57 +27,72 @@ public class Pawn extends ChessPiece {
 	}
 
 	@Override
-	public boolean[][] getAllPossibleMoves() {
-		boolean[][] pm = new boolean[getBoard().getRows()][getBoard().getColumns()];
-		Position p = new Position(0, this.position.getColumn());
+	public PieceType getType() {
+		return PieceType.PAWN;
+	}
+
+	@Override
+	public long getAttacks() {
+		return Bitboards.pawnAttacks(color, getSquare());
+	}
+
+	@Override
+	public long getPossibleTargets() {
+		Board board = getBoard();
+		int square = getSquare();
 		// wildcard modifier it will be negative if the piece color is white and
 		// positive if not
 		// This will help to know which way the piece should move
-		int wm = this.getColor() == Color.WHITE ? -1 : 1;
+		int wm = (this.getColor() == Color.WHITE ? -1 : 1) * board.getColumns();
+
+		// in diagonal
+		long targets = getAttacks() & Bitboards.occupancy(board, chessMatch.opponent(color));
 
 		// in front
-		p.setRow(this.position.getRow() + wm);
-		if (!getBoard().thereIsAPiece(p)) {
-			pm[p.getRow()][p.getColumn()] = true;
+		int front = square + wm;
+		if (front >= 0 && front < Bitboards.SQUARES && !board.isOccupied(front)) {
+			targets |= Bitboards.bit(front);
 			if (this.getMoveCount() == 0) {
-				p.setRow(this.position.getRow() + wm * 2);
-				if (!getBoard().thereIsAPiece(p))
-					pm[p.getRow()][p.getColumn()] = true;
+				front += wm;
+				if (front >= 0 && front < Bitboards.SQUARES && !board.isOccupied(front))
+					targets |= Bitboards.bit(front);
 			}
 		}
 
-		// in diagonal
-		p.setRow(this.position.getRow() + wm);
-		// left
-		p.setColumn(this.position.getColumn() + wm);
-		if (getBoard().positionExists(p) && getBoard().thereIsAPiece(p)
-				&& ((ChessPiece) getBoard().piece(p)).getColor() != this.getColor()) {
-			pm[p.getRow()][p.getColumn()] = true;
-		}
-		// right
-		p.setColumn(this.position.getColumn() - wm);
-		if (getBoard().positionExists(p) && getBoard().thereIsAPiece(p)
-				&& ((ChessPiece) getBoard().piece(p)).getColor() != this.getColor()) {
-			pm[p.getRow()][p.getColumn()] = true;
+		// #specialmove en passant
+		ChessPiece vulnerable = chessMatch.getEnPassantVulnerable();
+		if (vulnerable != null && vulnerable.getColor() != color && vulnerable.getPosition() != null
+				&& vulnerable.getPosition().getRow() == position.getRow()
+				&& Math.abs(vulnerable.getPosition().getColumn() - position.getColumn()) == 1) {
+			targets |= Bitboards.bit(vulnerable.getSquare() + wm);
 		}
 
-		// #specialmove en passant
-		if (chessMatch.getEnPassantVulnerable() != null) {
-//			System.out.println("tem peça vulneralvel a en passant");
-			if (position.getRow() == 3 || position.getRow() == 4) {
-				p.setValues(position.getRow(), position.getColumn() - 1); // left
-				if (getBoard().positionExists(p) && isThereOpponentPiece(p)
-						&& chessMatch.getEnPassantVulnerable() == getBoard().piece(p)) {
-					pm[p.getRow() + wm][p.getColumn()] = true;
-				}
-				p.setValues(position.getRow(), position.getColumn() + 1); // right
-				if (getBoard().positionExists(p) && isThereOpponentPiece(p)
-						&& chessMatch.getEnPassantVulnerable() == getBoard().piece(p)) {
-					pm[p.getRow() + wm][p.getColumn()] = true;
-				}
+		return targets;
+	}
+
+	@Override
+	public int generateMoves(int[] moves, int count, long targets) {
+		Board board = getBoard();
+		int source = getSquare();
+		for (; targets != 0; targets &= targets - 1) {
+			int target = Long.numberOfTrailingZeros(targets);
+			int flags = board.isOccupied(target) ? Move.CAPTURE : 0;
+			if (Math.abs(target - source) == 2 * board.getColumns())
+				flags = Move.DOUBLE_PUSH;
+			else if (flags == 0 && board.position(target).getColumn() != position.getColumn())
+				flags = Move.EN_PASSANT;
+
+			// #specialmove promotion
+			int row = board.position(target).getRow();
+			if (row == 0 || row == board.getRows() - 1) {
+				moves[count++] = Move.of(source, target, PieceType.QUEEN, flags);
+				moves[count++] = Move.of(source, target, PieceType.ROOK, flags);
+				moves[count++] = Move.of(source, target, PieceType.BISHOP, flags);
+				moves[count++] = Move.of(source, target, PieceType.KNIGHT, flags);
+			} else {
+				moves[count++] = Move.of(source, target, flags);
 			}
 		}
-
-		return pm;
+		return count;
 	}
 }
@@ -1,10 +1,11 @@
 package chess.pieces;
 
 import boardgame.Board;
-import boardgame.Position;
+import chess.Bitboards;
 import chess.ChessMatch;
 import chess.ChessPiece;
 import chess.Color;
+import chess.PieceType;
 
 public class Queen extends ChessPiece {
 
@@ -18,79 +19,12 @@ public class Queen extends ChessPiece {
 	}
 
 	@Override
-	public boolean[][] getAllPossibleMoves() {
-		boolean[][] pm = new boolean[getBoard().getRows()][getBoard().getColumns()];
-		Position p = new Position(0, 0);
-		// above
-		p.setValues(this.position.getRow() - 1, this.position.getColumn());
-		while (getBoard().positionExists(p) && !getBoard().thereIsAPiece(p)) {
-			pm[p.getRow()][p.getColumn()] = true;
-			p.setRow(p.getRow() - 1);
-		}
-		if (getBoard().positionExists(p) && isThereOpponentPiece(p))
-			pm[p.getRow()][p.getColumn()] = true;
-
-		// bellow
-		p.setValues(this.position.getRow() + 1, this.position.getColumn());
-		while (getBoard().positionExists(p) && !getBoard().thereIsAPiece(p)) {
-			pm[p.getRow()][p.getColumn()] = true;
-			p.setRow(p.getRow() + 1);
-		}
-		if (getBoard().positionExists(p) && isThereOpponentPiece(p))
-			pm[p.getRow()][p.getColumn()] = true;
-
-		// left
-		p.setValues(this.position.getRow(), this.position.getColumn() - 1);
-		while (getBoard().positionExists(p) && !getBoard().thereIsAPiece(p)) {
-			pm[p.getRow()][p.getColumn()] = true;
-			p.setColumn(p.getColumn() - 1);
-		}
-		if (getBoard().positionExists(p) && isThereOpponentPiece(p))
-			pm[p.getRow()][p.getColumn()] = true;
-
-		// rigth
-		p.setValues(this.position.getRow(), this.position.getColumn() + 1);
-		while (getBoard().positionExists(p) && !getBoard().thereIsAPiece(p)) {
-			pm[p.getRow()][p.getColumn()] = true;
-			p.setColumn(p.getColumn() + 1);
-		}
-		if (getBoard().positionExists(p) && isThereOpponentPiece(p))
-			pm[p.getRow()][p.getColumn()] = true;
-
-		p.setValues(this.position.getRow() - 1, this.position.getColumn() - 1);
-		while (getBoard().positionExists(p) && !getBoard().thereIsAPiece(p)) {
-			pm[p.getRow()][p.getColumn()] = true;
-			p.setValues(p.getRow() - 1, p.getColumn() - 1);
-		}
-		if (getBoard().positionExists(p) && isThereOpponentPiece(p))
-			pm[p.getRow()][p.getColumn()] = true;
-
-		// ne
-		p.setValues(this.position.getRow() - 1, this.position.getColumn() + 1);
-		while (getBoard().positionExists(p) && !getBoard().thereIsAPiece(p)) {
-			pm[p.getRow()][p.getColumn()] = true;
-			p.setValues(p.getRow() - 1, p.getColumn() + 1);
-		}
-		if (getBoard().positionExists(p) && isThereOpponentPiece(p))
-			pm[p.getRow()][p.getColumn()] = true;
-
-		// se
-		p.setValues(this.position.getRow() + 1, this.position.getColumn() + 1);
-		while (getBoard().positionExists(p) && !getBoard().thereIsAPiece(p)) {
-			pm[p.getRow()][p.getColumn()] = true;
-			p.setValues(p.getRow() + 1, p.getColumn() + 1);
-		}
-		if (getBoard().positionExists(p) && isThereOpponentPiece(p))
-			pm[p.getRow()][p.getColumn()] = true;
+	public PieceType getType() {
+		return PieceType.QUEEN;
+	}
 
-		// sw
-		p.setValues(this.position.getRow() + 1, this.position.getColumn() - 1);
-		while (getBoard().positionExists(p) && !getBoard().thereIsAPiece(p)) {
-			pm[p.getRow()][p.getColumn()] = true;
-			p.setValues(p.getRow() + 1, p.getColumn() - 1);
-		}
-		if (getBoard().positionExists(p) && isThereOpponentPiece(p))
-			pm[p.getRow()][p.getColumn()] = true;
-		return pm;
+	@Override
+	public long getAttacks() {
+		return Bitboards.queenAttacks(getSquare(), getBoard().getOccupied());
 	}
 }
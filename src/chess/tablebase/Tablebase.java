@@ -0,0 +1,122 @@
+package chess.tablebase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import chess.PieceType;
+
+/*
+ * Distance to mate of every placement of one material set, the strong side
+ * playing white. A position is indexed by the side to move (0 for the strong
+ * side), the white king, the black king and the other white pieces in the
+ * order of their types, six bits per square.
+ *
+ * Each entry keeps, in the given number of bits, zero for draws and illegal
+ * positions and otherwise one more than the plies to mate. Only the strong
+ * side can win, so the side to move says who does. The file starts with its
+ * magic, version, number of white pieces besides the king and bits per entry
+ * (4 bytes each), then a byte per piece with its type ordinal (8 in all, -1
+ * for none), then the entries packed in big endian longs from the lowest bit
+ * up, with a spare long at the end.
+ */
+public class Tablebase {
+	public static final int MAGIC = 0x58544231; // "XTB1"
+	public static final int VERSION = 1;
+	public static final int HEADER_BYTES = 24;
+	public static final int MAX_PIECES = 8;
+
+	private static final PieceType[] TYPES = PieceType.values();
+
+	private final PieceType[] pieces;
+	private final int bits;
+	private final long mask;
+	private final ByteBuffer data;
+
+	Tablebase(ByteBuffer data) throws IOException {
+		if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION)
+			throw new IOException("Not a tablebase");
+		this.pieces = new PieceType[data.getInt(8)];
+		this.bits = data.getInt(12);
+		for (int i = 0; i < pieces.length; i++)
+			pieces[i] = TYPES[data.get(16 + i)];
+		this.mask = (1L << bits) - 1;
+		this.data = data;
+	}
+
+	public static Tablebase open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return new Tablebase(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	// like "KBNK"
+	public static String name(PieceType[] pieces) {
+		StringBuilder sb = new StringBuilder("K");
+		for (PieceType type : pieces)
+			sb.append(Character.toUpperCase(type.getLetter()));
+		return sb.append('K').toString();
+	}
+
+	public String getName() {
+		return name(pieces);
+	}
+
+	public PieceType[] getPieces() {
+		return pieces.clone();
+	}
+
+	PieceType piece(int i) {
+		return pieces[i];
+	}
+
+	int pieceCount() {
+		return pieces.length;
+	}
+
+	public long size() {
+		return size(pieces.length);
+	}
+
+	static long size(int pieces) {
+		return 1L << (6 * (pieces + 2) + 1);
+	}
+
+	// zero for a draw, otherwise one more than the plies to mate
+	public int value(long index) {
+		long bit = index * bits;
+		int word = (int) (bit >>> 6);
+		int shift = (int) (bit & 63);
+		long value = data.getLong(HEADER_BYTES + 8 * word) >>> shift;
+		if (shift + bits > 64)
+			value |= data.getLong(HEADER_BYTES + 8 * (word + 1)) << (64 - shift);
+		return (int) (value & mask);
+	}
+
+	// the header and entries as written to a file
+	static ByteBuffer pack(PieceType[] pieces, int[] values, int bits) {
+		long words = ((long) values.length * bits + 63) / 64 + 1;
+		ByteBuffer data = ByteBuffer.allocate((int) (HEADER_BYTES + 8 * words));
+		data.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, pieces.length).putInt(12, bits);
+		for (int i = 0; i < MAX_PIECES; i++)
+			data.put(16 + i, (byte) (i < pieces.length ? pieces[i].ordinal() : -1));
+
+		long word = 0;
+		int filled = 0;
+		int position = HEADER_BYTES;
+		for (int value : values) {
+			word |= (long) value << filled;
+			filled += bits;
+			if (filled >= 64) {
+				data.putLong(position, word);
+				position += 8;
+				filled -= 64;
+				word = filled == 0 ? 0 : (long) value >>> (bits - filled);
+			}
+		}
+		data.putLong(position, word);
+		return data;
+	}
+}
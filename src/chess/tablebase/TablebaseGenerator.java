@@ -0,0 +1,390 @@
+package chess.tablebase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import chess.Bitboards;
+import chess.Color;
+import chess.PieceType;
+
+/*
+ * Retrograde generator of a Tablebase for a king and a few pieces against a
+ * lone king. Every position gets a state byte, then the passes alternate:
+ * an odd pass n unmoves the strong side from the positions where the weak
+ * side is mated in n - 1 plies and marks them won in n, an even pass unmoves
+ * the weak king from the positions just won and marks those where every
+ * weak move reaches a won position as lost in n. A pass only writes positions
+ * of one side to move and reads the other, so its chunks run in parallel.
+ * Once a pass changes nothing the positions left are draws.
+ *
+ * Pawns promote to a queen or a rook, looked up in the tablebases given to
+ * the constructor. The weak king taking a piece is scored as a draw, which
+ * holds while the pieces left can't mate, as with one piece or KBNK.
+ */
+public class TablebaseGenerator {
+	private static final byte UNKNOWN = 0;
+	private static final byte ILLEGAL = 1;
+	private static final byte DRAW = 2;
+	// plus the plies to mate
+	private static final int RESOLVED = 3;
+	private static final int MAX_PLIES = Byte.MAX_VALUE - RESOLVED;
+
+	private static final int CHUNK = 1 << 16;
+	private static final PieceType[] PROMOTIONS = { PieceType.QUEEN, PieceType.ROOK };
+
+	// the 8 neighbours of each square, -1 off the board
+	private static final int[][] NEIGHBOURS = new int[64][8];
+
+	static {
+		int[][] steps = { { -1, -1 }, { -1, 0 }, { -1, 1 }, { 0, -1 }, { 0, 1 }, { 1, -1 }, { 1, 0 }, { 1, 1 } };
+		for (int square = 0; square < 64; square++) {
+			for (int d = 0; d < 8; d++) {
+				int row = square / 8 + steps[d][0];
+				int column = square % 8 + steps[d][1];
+				NEIGHBOURS[square][d] = row < 0 || row > 7 || column < 0 || column > 7 ? -1 : row * 8 + column;
+			}
+		}
+	}
+
+	private final PieceType[] pieces;
+	private final Tablebases promotions;
+	private final int squares; // kings included
+	private final int half; // positions with the strong side to move
+	private final byte[] state;
+	private final byte[] weakMoves; // legal king steps of the weak side to move, a bit per neighbour
+	private final byte[] pending; // plies to mate through a promotion, 0 for none
+	private int maxPlies;
+	private int passes;
+
+	/*
+	 * pieces are the strong side's besides its king, in the canonical order of
+	 * Tablebases.canonical, and promotions holds the tables pawns promote into.
+	 */
+	public TablebaseGenerator(PieceType[] pieces, Tablebases promotions) {
+		if (pieces.length == 0 || pieces.length > 2)
+			throw new IllegalArgumentException("Only one or two pieces besides the king are supported");
+		if (!Tablebases.canonical(pieces))
+			throw new IllegalArgumentException(Tablebase.name(pieces) + " is not in canonical order");
+		this.pieces = pieces.clone();
+		this.promotions = promotions;
+		this.squares = pieces.length + 2;
+		this.half = (int) (Tablebase.size(pieces.length) / 2);
+		this.state = new byte[2 * half];
+		this.weakMoves = new byte[half];
+		boolean pawns = false;
+		for (PieceType type : pieces)
+			pawns |= type == PieceType.PAWN;
+		this.pending = pawns ? new byte[half] : null;
+	}
+
+	public String getName() {
+		return Tablebase.name(pieces);
+	}
+
+	// longest mate in plies, once generated
+	public int getMaxPlies() {
+		return maxPlies;
+	}
+
+	public int getPasses() {
+		return passes;
+	}
+
+	public void generate(ForkJoinPool pool) {
+		parallel(pool, 0, 2 * half, this::initialize);
+		int maxPending = 0;
+		if (pending != null)
+			for (byte plies : pending)
+				maxPending = Math.max(maxPending, plies & 0xFF);
+
+		// a pass that changes nothing leaves the next one without a frontier,
+		// but promotions can still resolve positions later
+		boolean changed = true;
+		for (int n = 1; changed || n <= maxPending; n++) {
+			if (n > MAX_PLIES)
+				throw new IllegalStateException(getName() + " has mates longer than " + MAX_PLIES + " plies");
+			int plies = n;
+			long count;
+			if (n % 2 == 1) {
+				count = parallel(pool, half, 2 * half, i -> unmoveStrong(i, plies));
+				if (pending != null)
+					count += parallel(pool, 0, half, i -> promote(i, plies));
+			} else {
+				count = parallel(pool, 0, half, i -> unmoveWeak(i, plies));
+			}
+			changed = count > 0;
+			if (changed)
+				maxPlies = n;
+			passes = n;
+		}
+	}
+
+	// values of every position, zero for draws and otherwise one more than the plies to mate
+	public int[] values() {
+		int[] values = new int[state.length];
+		for (int i = 0; i < state.length; i++)
+			values[i] = state[i] >= RESOLVED ? state[i] - RESOLVED + 1 : 0;
+		return values;
+	}
+
+	public Tablebase toTablebase() {
+		try {
+			return new Tablebase(pack());
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// writes the table to its file in the directory, see Tablebases.path
+	public Tablebase write(Path directory) throws IOException {
+		ByteBuffer data = pack();
+		ByteBuffer remaining = data.duplicate();
+		try (FileChannel channel = FileChannel.open(Tablebases.path(directory, pieces), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (remaining.hasRemaining())
+				channel.write(remaining);
+		}
+		return new Tablebase(data);
+	}
+
+	private ByteBuffer pack() {
+		return Tablebase.pack(pieces, values(), 32 - Integer.numberOfLeadingZeros(maxPlies + 1));
+	}
+
+	@FunctionalInterface
+	private interface IndexTask {
+		// whether the position changed
+		boolean run(int index);
+	}
+
+	private static long parallel(ForkJoinPool pool, int from, int to, IndexTask task) {
+		List<RecursiveTask<Long>> tasks = new ArrayList<>();
+		for (int start = from; start < to; start += CHUNK) {
+			int first = start;
+			int last = Math.min(to, start + CHUNK);
+			tasks.add(new RecursiveTask<Long>() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected Long compute() {
+					long changed = 0;
+					for (int i = first; i < last; i++)
+						if (task.run(i))
+							changed++;
+					return changed;
+				}
+			});
+		}
+		tasks.forEach(pool::execute);
+		long changed = 0;
+		for (RecursiveTask<Long> t : tasks)
+			changed += t.join();
+		return changed;
+	}
+
+	// square k of the index: 0 the white king, 1 the black king, then the pieces
+	private int square(int index, int k) {
+		return index >>> shift(k) & 63;
+	}
+
+	private int shift(int k) {
+		return 6 * (squares - 1 - k);
+	}
+
+	private int withSquare(int index, int k, int square) {
+		return index & ~(63 << shift(k)) | square << shift(k);
+	}
+
+	private static long attacks(PieceType type, int square, long occupied) {
+		return switch (type) {
+			case PAWN -> Bitboards.pawnAttacks(Color.WHITE, square);
+			case KNIGHT -> Bitboards.knightAttacks(square);
+			case BISHOP -> Bitboards.bishopAttacks(square, occupied);
+			case ROOK -> Bitboards.rookAttacks(square, occupied);
+			case QUEEN -> Bitboards.queenAttacks(square, occupied);
+			case KING -> Bitboards.kingAttacks(square);
+		};
+	}
+
+	// squares attacked by the strong side, leaving out piece skip
+	private long strongAttacks(int index, long occupied, int skip) {
+		long attacked = Bitboards.kingAttacks(square(index, 0));
+		for (int i = 0; i < pieces.length; i++)
+			if (i != skip)
+				attacked |= attacks(pieces[i], square(index, i + 2), occupied);
+		return attacked;
+	}
+
+	// occupied squares, 0 when two pieces share one
+	private long occupied(int index) {
+		long occupied = 0;
+		for (int k = 0; k < squares; k++) {
+			long bit = Bitboards.bit(square(index, k));
+			if ((occupied & bit) != 0)
+				return 0;
+			occupied |= bit;
+		}
+		return occupied;
+	}
+
+	private boolean initialize(int index) {
+		long occupied = occupied(index);
+		int whiteKing = square(index, 0);
+		int blackKing = square(index, 1);
+		if (occupied == 0 || Bitboards.contains(Bitboards.kingAttacks(whiteKing), blackKing)) {
+			state[index] = ILLEGAL;
+			return true;
+		}
+		for (int i = 0; i < pieces.length; i++) {
+			int row = square(index, i + 2) / 8;
+			if (pieces[i] == PieceType.PAWN && (row == 0 || row == 7)) {
+				state[index] = ILLEGAL;
+				return true;
+			}
+		}
+
+		long attacked = strongAttacks(index, occupied, -1);
+		if (index < half) {
+			// the weak king can't be in check with the strong side to move
+			if (Bitboards.contains(attacked, blackKing)) {
+				state[index] = ILLEGAL;
+				return true;
+			}
+			if (pending != null)
+				pending[index] = (byte) promotionPlies(index, occupied);
+			return false;
+		}
+
+		// sliders still attack the squares behind the king once it steps away
+		long withoutKing = occupied ^ Bitboards.bit(blackKing);
+		long attackedThrough = strongAttacks(index, withoutKing, -1);
+		long guarded = Bitboards.kingAttacks(whiteKing);
+		int moves = 0;
+		for (int d = 0; d < 8; d++) {
+			int target = NEIGHBOURS[blackKing][d];
+			if (target < 0 || Bitboards.contains(guarded, target))
+				continue;
+			if (Bitboards.contains(occupied, target)) {
+				int taken = pieceAt(index, target);
+				if (!Bitboards.contains(strongAttacks(index, withoutKing, taken), target)) {
+					state[index] = DRAW;
+					return true;
+				}
+			} else if (!Bitboards.contains(attackedThrough, target)) {
+				moves |= 1 << d;
+			}
+		}
+		if (moves == 0) {
+			state[index] = Bitboards.contains(attacked, blackKing) ? (byte) RESOLVED : DRAW;
+			return true;
+		}
+		weakMoves[index - half] = (byte) moves;
+		return false;
+	}
+
+	// piece standing on the square, -1 for none
+	private int pieceAt(int index, int square) {
+		for (int i = 0; i < pieces.length; i++)
+			if (square(index, i + 2) == square)
+				return i;
+		return -1;
+	}
+
+	// #specialmove promotion: fewest plies to mate through promoting a pawn, 0 for none
+	private int promotionPlies(int index, long occupied) {
+		int best = 0;
+		for (int i = 0; i < pieces.length; i++) {
+			int square = square(index, i + 2);
+			if (pieces[i] != PieceType.PAWN || square / 8 != 1 || Bitboards.contains(occupied, square - 8))
+				continue;
+			for (PieceType promotion : PROMOTIONS) {
+				PieceType[] promoted = pieces.clone();
+				promoted[i] = promotion;
+				int[] placed = new int[squares];
+				for (int k = 0; k < squares; k++)
+					placed[k] = k == i + 2 ? square - 8 : square(index, k);
+				int value = promotions.probe(promoted, placed, false);
+				if (value == Tablebases.UNKNOWN)
+					throw new IllegalStateException(Tablebase.name(promoted) + " is needed to generate " + getName());
+				// the weak side loses in -value - 1 plies
+				if (value < 0 && (best == 0 || -value < best))
+					best = -value;
+			}
+		}
+		return best;
+	}
+
+	// odd pass: positions the strong side wins by moving into a weak loss in n - 1
+	private boolean unmoveStrong(int index, int n) {
+		if (state[index] != RESOLVED + n - 1)
+			return false;
+		long occupied = occupied(index);
+		int base = index - half;
+		boolean changed = false;
+		long kingFrom = Bitboards.kingAttacks(square(index, 0)) & ~occupied;
+		for (; kingFrom != 0; kingFrom &= kingFrom - 1)
+			changed |= win(withSquare(base, 0, Long.numberOfTrailingZeros(kingFrom)), n);
+		for (int i = 0; i < pieces.length; i++) {
+			int square = square(index, i + 2);
+			long from;
+			if (pieces[i] == PieceType.PAWN) {
+				// pawns go back down the board, two squares from the fourth rank
+				from = 0;
+				if (square / 8 < 6 && !Bitboards.contains(occupied, square + 8)) {
+					from |= Bitboards.bit(square + 8);
+					if (square / 8 == 4 && !Bitboards.contains(occupied, square + 16))
+						from |= Bitboards.bit(square + 16);
+				}
+			} else {
+				from = attacks(pieces[i], square, occupied) & ~occupied;
+			}
+			for (; from != 0; from &= from - 1)
+				changed |= win(withSquare(base, i + 2, Long.numberOfTrailingZeros(from)), n);
+		}
+		return changed;
+	}
+
+	private boolean win(int index, int n) {
+		if (state[index] != UNKNOWN)
+			return false;
+		state[index] = (byte) (RESOLVED + n);
+		return true;
+	}
+
+	private boolean promote(int index, int n) {
+		return (pending[index] & 0xFF) == n && win(index, n);
+	}
+
+	// even pass: weak positions one king step before a strong win in n - 1
+	private boolean unmoveWeak(int index, int n) {
+		if (state[index] != RESOLVED + n - 1)
+			return false;
+		long from = Bitboards.kingAttacks(square(index, 1)) & ~occupied(index);
+		boolean changed = false;
+		for (; from != 0; from &= from - 1) {
+			int previous = withSquare(index, 1, Long.numberOfTrailingZeros(from)) + half;
+			if (state[previous] == UNKNOWN && lost(previous)) {
+				state[previous] = (byte) (RESOLVED + n);
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	// every legal move of the weak king reaches a won position
+	private boolean lost(int index) {
+		int blackKing = square(index, 1);
+		int moves = weakMoves[index - half];
+		for (int d = 0; d < 8; d++)
+			if ((moves & 1 << d) != 0 && state[withSquare(index - half, 1, NEIGHBOURS[blackKing][d])] < RESOLVED)
+				return false;
+		return true;
+	}
+}
@@ -0,0 +1,152 @@
+package chess.tablebase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import chess.ChessMatch;
+import chess.Color;
+import chess.PieceType;
+
+/*
+ * The tablebases of a directory, a file per material set named like
+ * "KBNK.xtb", probed with a match of either color. Probing allocates
+ * nothing, so the engine can do it at every node.
+ */
+public class Tablebases {
+	public static final String EXTENSION = ".xtb";
+	public static final int UNKNOWN = Integer.MIN_VALUE;
+	// kings included
+	public static final int MAX_PIECES = 4;
+
+	private static final PieceType[] TYPES = PieceType.values();
+
+	// by the counts of the strong side's pieces, 3 bits per type
+	private final Tablebase[] tablebases = new Tablebase[1 << 15];
+	private final List<String> names = new ArrayList<>();
+
+	public Tablebases() {
+	}
+
+	public Tablebases(Path directory) throws IOException {
+		List<Path> files;
+		try (Stream<Path> paths = Files.list(directory)) {
+			files = paths.filter(p -> p.getFileName().toString().endsWith(EXTENSION)).sorted().toList();
+		}
+		for (Path file : files)
+			add(Tablebase.open(file));
+	}
+
+	public static Path path(Path directory, PieceType[] pieces) {
+		return directory.resolve(Tablebase.name(pieces) + EXTENSION);
+	}
+
+	// pieces of a name like "KQK", without the kings
+	public static PieceType[] parse(String name) {
+		if (name.length() < 3 || name.charAt(0) != 'K' || name.charAt(name.length() - 1) != 'K')
+			throw new IllegalArgumentException("Invalid material: " + name);
+		PieceType[] pieces = new PieceType[name.length() - 2];
+		for (int i = 0; i < pieces.length; i++) {
+			char letter = Character.toLowerCase(name.charAt(i + 1));
+			for (PieceType type : TYPES)
+				if (type != PieceType.KING && type.getLetter() == letter)
+					pieces[i] = type;
+			if (pieces[i] == null)
+				throw new IllegalArgumentException("Invalid material: " + name);
+		}
+		return pieces;
+	}
+
+	// strongest piece first, like "KQRK" and "KBNK"
+	public static boolean canonical(PieceType[] pieces) {
+		for (int i = 0; i < pieces.length; i++)
+			if (pieces[i] == PieceType.KING || (i > 0 && pieces[i].ordinal() > pieces[i - 1].ordinal()))
+				return false;
+		return true;
+	}
+
+	public void add(Tablebase tablebase) {
+		int signature = 0;
+		for (int i = 0; i < tablebase.pieceCount(); i++)
+			signature += 1 << 3 * tablebase.piece(i).ordinal();
+		tablebases[signature] = tablebase;
+		names.add(tablebase.getName());
+	}
+
+	public List<String> getNames() {
+		return List.copyOf(names);
+	}
+
+	/*
+	 * Distance to mate from the side to move: positive when it mates, negative
+	 * when it gets mated and 0 for a draw, in plies plus one, so a side already
+	 * mated gets -1 and mate in one 2. UNKNOWN when no table holds the position,
+	 * castling rights included.
+	 */
+	public int probe(ChessMatch chessMatch) {
+		long occupied = chessMatch.getOccupied();
+		if (Long.bitCount(occupied) > MAX_PIECES || chessMatch.getCastlingRights() != 0 || chessMatch.getCheckMate())
+			return UNKNOWN;
+		int white = 0;
+		int black = 0;
+		for (int t = 0; t < PieceType.KING.ordinal(); t++) {
+			white += Long.bitCount(chessMatch.getBitboard(Color.WHITE, TYPES[t])) << 3 * t;
+			black += Long.bitCount(chessMatch.getBitboard(Color.BLACK, TYPES[t])) << 3 * t;
+		}
+		// one side must have nothing but its king
+		if ((white == 0) == (black == 0))
+			return UNKNOWN;
+		Tablebase tablebase = tablebases[white | black];
+		if (tablebase == null)
+			return UNKNOWN;
+
+		// tables have the strong side playing white, so black is mirrored
+		Color strong = white != 0 ? Color.WHITE : Color.BLACK;
+		Color weak = strong == Color.WHITE ? Color.BLACK : Color.WHITE;
+		int flip = strong == Color.WHITE ? 0 : 56;
+		boolean strongToMove = chessMatch.getCurrentPlayer() == strong;
+		long index = strongToMove ? 0 : 1;
+		index = index << 6 | square(chessMatch.getBitboard(strong, PieceType.KING)) ^ flip;
+		index = index << 6 | square(chessMatch.getBitboard(weak, PieceType.KING)) ^ flip;
+		long used = 0;
+		for (int i = 0; i < tablebase.pieceCount(); i++) {
+			long pieces = chessMatch.getBitboard(strong, tablebase.piece(i)) & ~used;
+			used |= Long.lowestOneBit(pieces);
+			index = index << 6 | square(pieces) ^ flip;
+		}
+		int value = tablebase.value(index);
+		return strongToMove ? value : -value;
+	}
+
+	/*
+	 * Same as above for the strong side playing white, with the white king,
+	 * the black king and then the pieces in any order on squares.
+	 */
+	int probe(PieceType[] pieces, int[] squares, boolean strongToMove) {
+		int signature = 0;
+		for (PieceType type : pieces)
+			signature += 1 << 3 * type.ordinal();
+		Tablebase tablebase = tablebases[signature];
+		if (tablebase == null)
+			return UNKNOWN;
+		long index = strongToMove ? 0 : 1;
+		index = (index << 6 | squares[0]) << 6 | squares[1];
+		int used = 0;
+		for (int i = 0; i < tablebase.pieceCount(); i++) {
+			int j = 0;
+			while ((used & 1 << j) != 0 || pieces[j] != tablebase.piece(i))
+				j++;
+			used |= 1 << j;
+			index = index << 6 | squares[j + 2];
+		}
+		int value = tablebase.value(index);
+		return strongToMove ? value : -value;
+	}
+
+	private static int square(long bitboard) {
+		return Long.numberOfTrailingZeros(bitboard);
+	}
+}
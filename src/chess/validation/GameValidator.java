@@ -0,0 +1,102 @@
+package chess.validation;
+
+import java.util.Arrays;
+
+import chess.ChessMatch;
+import chess.ChessPosition;
+import chess.Color;
+import chess.Move;
+import chess.PieceType;
+import chess.exceptions.ChessException;
+
+/*
+ * Replays games written as a line of coordinate moves, like "e2e4 e7e5 g1f3
+ * ... 1-0", on a match of their own. The moves start from the initial
+ * position or from the six fields of a FEN put before them, and the result
+ * at the end is optional. A game must not go on after checkmate and must not
+ * claim a result its final position contradicts. Validators keep no state,
+ * so any number of threads can share one.
+ */
+public class GameValidator {
+	private static final String[] RESULTS = { "1-0", "0-1", "1/2-1/2", "*" };
+	private static final int FEN_FIELDS = 6;
+
+	public Verdict validate(long game, String line) {
+		String[] tokens = line.trim().split("\\s+");
+		int first = 0;
+		ChessMatch chessMatch;
+		if (tokens[0].indexOf('/') >= 0) {
+			first = FEN_FIELDS;
+			try {
+				chessMatch = new ChessMatch(String.join(" ", Arrays.copyOf(tokens, Math.min(FEN_FIELDS, tokens.length))));
+			} catch (ChessException e) {
+				return new Verdict(game, 0, null, 0, e.getMessage());
+			}
+		} else {
+			chessMatch = new ChessMatch();
+		}
+
+		String claimed = null;
+		int plies = 0;
+		for (int i = first; i < tokens.length; i++) {
+			String token = tokens[i];
+			if (token.isEmpty())
+				continue;
+			if (claimed != null)
+				return new Verdict(game, plies, null, plies + 1, "nothing can follow the result " + claimed);
+			if (isResult(token)) {
+				claimed = token;
+				continue;
+			}
+
+			String error = perform(chessMatch, token);
+			if (error != null)
+				return new Verdict(game, plies, null, plies + 1, token + ": " + error);
+			plies++;
+		}
+
+		if (claimed == null)
+			claimed = "*";
+		String result = finalResult(chessMatch, claimed);
+		if (!claimed.equals("*") && !claimed.equals(result))
+			return new Verdict(game, plies, null, plies, "the game ends " + result + " but claims " + claimed);
+		return new Verdict(game, plies, result, 0, null);
+	}
+
+	private static boolean isResult(String token) {
+		for (String result : RESULTS)
+			if (result.equals(token))
+				return true;
+		return false;
+	}
+
+	// null when the move was played
+	private static String perform(ChessMatch chessMatch, String token) {
+		if (chessMatch.getCheckMate())
+			return "the game is already over";
+		int move = Move.parse(token);
+		if (move == Move.NONE)
+			return "not a coordinate move";
+		ChessPosition source = ChessPosition.fromSquare(Move.source(move));
+		ChessPosition target = ChessPosition.fromSquare(Move.target(move));
+		PieceType promotion = Move.promotion(move);
+		try {
+			if (promotion != null && !chessMatch.isPromotion(source, target))
+				return "not a promotion";
+			chessMatch.performChessMove(source, target, promotion == null ? null : String.valueOf(promotion.getLetter()));
+		} catch (ChessException e) {
+			return e.getMessage();
+		}
+		return null;
+	}
+
+	// decided by the position on checkmate and stalemate, claimed otherwise
+	private static String finalResult(ChessMatch chessMatch, String claimed) {
+		// after checkmate the winner is still the current player
+		if (chessMatch.getCheckMate())
+			return chessMatch.getCurrentPlayer() == Color.WHITE ? "1-0" : "0-1";
+		if (!chessMatch.getCheck() && chessMatch.generateMoves(new int[ChessMatch.MAX_MOVES]) == 0)
+			return "1/2-1/2";
+		return claimed;
+	}
+}
@@ -0,0 +1,20 @@
+package chess.validation;
+
+/*
+ * Outcome of validating one game: the plies played, the result (from the
+ * final position when it is checkmate or stalemate, as claimed otherwise)
+ * and, for a rejected game, the 1-based ply that failed (0 for its FEN) and
+ * why.
+ */
+public record Verdict(long game, int plies, String result, int failedPly, String error) {
+
+	public boolean isLegal() {
+		return error == null;
+	}
+
+	@Override
+	public String toString() {
+		return isLegal() ? "legal " + result + " " + plies + " plies"
+				: "illegal at ply " + failedPly + ": " + error;
+	}
+}